@@ -0,0 +1,166 @@
+// Whole-frame rectangle detection behind a single JNI call. Mirrors the OpenCV stages of
+// OpenCVHelper, but all intermediate images live in a per-instance Detector and are reused
+// from frame to frame.
+
+#include <jni.h>
+#include <algorithm>
+#include <cmath>
+#include <functional>
+#include <utility>
+#include <vector>
+#include <opencv2/core/core.hpp>
+#include <opencv2/imgproc/imgproc.hpp>
+
+namespace {
+
+const double EDGE_THRESHOLD = 127.0;
+const double MIN_AREA_RATIO = 0.01;
+const double APPROX_EPSILON_RATIO = 0.1;
+const double MIN_COSINE = -0.3;
+const double MAX_COSINE = 0.5;
+const int RESULT_LENGTH = 9;
+
+struct Detector {
+    cv::Mat small;
+    cv::Mat sobelX;
+    cv::Mat sobelY;
+    cv::Mat absX;
+    cv::Mat absY;
+    cv::Mat edge;
+    cv::Mat mono;
+    std::vector<std::vector<cv::Point> > contours;
+    std::vector<cv::Point> approx;
+    // Area and index of each contour large enough to be tested
+    std::vector<std::pair<double, size_t> > candidates;
+};
+
+double cosine(const cv::Point &pt1, const cv::Point &pt2, const cv::Point &pt0) {
+    double dx1 = pt1.x - pt0.x;
+    double dy1 = pt1.y - pt0.y;
+    double dx2 = pt2.x - pt0.x;
+    double dy2 = pt2.y - pt0.y;
+    return (dx1 * dx2 + dy1 * dy2) / std::sqrt((dx1 * dx1 + dy1 * dy1) * (dx2 * dx2 + dy2 * dy2) + 1e-10);
+}
+
+// Finds the largest rectangular contour in detector.small, like ContourKernel. Writes its corners,
+// scaled by ratio, and its area relative to the image to result, and returns whether one was found.
+bool findQuad(Detector &detector, double ratio, float *result) {
+    cv::Sobel(detector.small, detector.sobelX, CV_16S, 1, 0);
+    cv::Sobel(detector.small, detector.sobelY, CV_16S, 0, 1);
+    cv::convertScaleAbs(detector.sobelX, detector.absX);
+    cv::convertScaleAbs(detector.sobelY, detector.absY);
+    cv::addWeighted(detector.absX, 0.5, detector.absY, 0.5, 0.0, detector.edge);
+    cv::threshold(detector.edge, detector.mono, EDGE_THRESHOLD, 255.0, cv::THRESH_BINARY);
+    // findContours overwrites mono, which is scratch anyway
+    cv::findContours(detector.mono, detector.contours, CV_RETR_EXTERNAL, CV_CHAIN_APPROX_SIMPLE);
+
+    double matArea = (double) detector.small.rows * detector.small.cols;
+    detector.candidates.clear();
+    for (size_t i = 0; i < detector.contours.size(); i++) {
+        double area = std::fabs(cv::contourArea(detector.contours[i]));
+        if (area >= matArea * MIN_AREA_RATIO) {
+            detector.candidates.push_back(std::make_pair(area, i));
+        }
+    }
+    // Largest first, so the first quad found is the one the Java backends report
+    std::sort(detector.candidates.begin(), detector.candidates.end(),
+              std::greater<std::pair<double, size_t> >());
+    for (size_t k = 0; k < detector.candidates.size(); k++) {
+        double area = detector.candidates[k].first;
+        const std::vector<cv::Point> &contour = detector.contours[detector.candidates[k].second];
+        cv::approxPolyDP(contour, detector.approx, cv::arcLength(contour, true) * APPROX_EPSILON_RATIO, true);
+        if (detector.approx.size() != 4 || !cv::isContourConvex(detector.approx)) {
+            continue;
+        }
+        double minCos = 1.0;
+        double maxCos = -1.0;
+        for (int j = 0; j < 4; j++) {
+            double cos = cosine(detector.approx[(j + 1) % 4], detector.approx[(j + 3) % 4], detector.approx[j]);
+            minCos = std::min(minCos, cos);
+            maxCos = std::max(maxCos, cos);
+        }
+        if (minCos >= MIN_COSINE && maxCos <= MAX_COSINE) {
+            for (int j = 0; j < 4; j++) {
+                result[2 * j] = (float) (detector.approx[j].x * ratio);
+                result[2 * j + 1] = (float) (detector.approx[j].y * ratio);
+            }
+            result[8] = (float) (area / matArea);
+            return true;
+        }
+    }
+    return false;
+}
+
+void throwIllegalArgument(JNIEnv *env, const char *message) {
+    jclass type = env->FindClass("java/lang/IllegalArgumentException");
+    if (type != NULL) {
+        env->ThrowNew(type, message);
+    }
+}
+
+}  // namespace
+
+extern "C" {
+
+JNIEXPORT jlong JNICALL
+Java_io_github_iyotetsuya_rectangledetection_utils_NativeQuadDetector_nativeCreate(JNIEnv *, jobject) {
+    return (jlong) new Detector();
+}
+
+JNIEXPORT void JNICALL
+Java_io_github_iyotetsuya_rectangledetection_utils_NativeQuadDetector_nativeDestroy(JNIEnv *, jobject,
+                                                                                   jlong handle) {
+    delete (Detector *) handle;
+}
+
+// Detects on the width x height luma plane at the start of data (an NV21 frame or a plain gray
+// image), decimated to fit in workSize x workSize. result receives x0, y0, ..., x3, y3 in the
+// coordinates of data, followed by the score.
+JNIEXPORT jboolean JNICALL
+Java_io_github_iyotetsuya_rectangledetection_utils_NativeQuadDetector_nativeDetect(JNIEnv *env, jobject,
+                                                                                  jlong handle,
+                                                                                  jbyteArray data,
+                                                                                  jint width, jint height,
+                                                                                  jint workSize,
+                                                                                  jfloatArray result) {
+    if (width <= 0 || height <= 0 || workSize <= 0) {
+        throwIllegalArgument(env, "width, height and workSize must be positive");
+        return JNI_FALSE;
+    }
+    if (env->GetArrayLength(data) < (jlong) width * height) {
+        throwIllegalArgument(env, "data is smaller than width x height");
+        return JNI_FALSE;
+    }
+    if (env->GetArrayLength(result) < RESULT_LENGTH) {
+        throwIllegalArgument(env, "result is too short");
+        return JNI_FALSE;
+    }
+    Detector &detector = *(Detector *) handle;
+    double ratio = std::max((double) width / workSize, (double) height / workSize);
+    if (ratio < 1.0) {
+        ratio = 1.0;
+    }
+    cv::Size size((int) (width / ratio), (int) (height / ratio));
+
+    // Only the decimation reads the Java array, so the critical section stays short
+    void *bytes = env->GetPrimitiveArrayCritical(data, 0);
+    if (bytes == NULL) {
+        return JNI_FALSE;
+    }
+    cv::Mat luma(height, width, CV_8UC1, bytes);
+    if (ratio > 1.0) {
+        cv::resize(luma, detector.small, size, 0, 0, cv::INTER_AREA);
+    } else {
+        luma.copyTo(detector.small);
+    }
+    env->ReleasePrimitiveArrayCritical(data, bytes, JNI_ABORT);
+
+    float corners[RESULT_LENGTH];
+    if (!findQuad(detector, ratio, corners)) {
+        return JNI_FALSE;
+    }
+    env->SetFloatArrayRegion(result, 0, RESULT_LENGTH, corners);
+    return JNI_TRUE;
+}
+
+}  // extern "C"
@@ -7,27 +7,80 @@ import android.os.Bundle
 import android.util.Log
 import android.view.ViewGroup
 import android.widget.FrameLayout
+import android.widget.Toast
 import androidx.appcompat.app.AppCompatActivity
 import androidx.core.app.ActivityCompat
 import androidx.core.content.ContextCompat
-import io.github.iyotetsuya.rectangledetection.models.CameraData
+import io.github.iyotetsuya.rectangledetection.detector.CornerKalmanFilter
+import io.github.iyotetsuya.rectangledetection.detector.DetectorPool
+import io.github.iyotetsuya.rectangledetection.detector.Frame
+import io.github.iyotetsuya.rectangledetection.detector.FrameContext
+import io.github.iyotetsuya.rectangledetection.detector.FrameProcessor
+import io.github.iyotetsuya.rectangledetection.detector.FrameProcessorChain
+import io.github.iyotetsuya.rectangledetection.detector.FrameRecorder
+import io.github.iyotetsuya.rectangledetection.detector.FrameSource
+import io.github.iyotetsuya.rectangledetection.detector.JavaQuadDetector
+import io.github.iyotetsuya.rectangledetection.detector.MultiQuadDetector
+import io.github.iyotetsuya.rectangledetection.detector.QuadDetector
+import io.github.iyotetsuya.rectangledetection.detector.QuadList
+import io.github.iyotetsuya.rectangledetection.detector.RectangleDetector
+import io.github.iyotetsuya.rectangledetection.detector.RegionOfInterest
+import io.github.iyotetsuya.rectangledetection.detector.ReplayFrameSource
+import io.github.iyotetsuya.rectangledetection.detector.Tracer
+import io.github.iyotetsuya.rectangledetection.utils.CameraFrameSource
+import io.github.iyotetsuya.rectangledetection.utils.CornerTransform
+import io.github.iyotetsuya.rectangledetection.utils.FrameExchanger
+import io.github.iyotetsuya.rectangledetection.utils.NativeQuadDetector
+import io.github.iyotetsuya.rectangledetection.utils.OpenCVFrameStages
 import io.github.iyotetsuya.rectangledetection.utils.OpenCVHelper
+import io.github.iyotetsuya.rectangledetection.utils.OpenCVQuadDetector
+import io.github.iyotetsuya.rectangledetection.utils.PipelineStage
+import io.github.iyotetsuya.rectangledetection.utils.SubPixelCornerRefiner
+import io.github.iyotetsuya.rectangledetection.utils.TrackingQuadDetector
 import io.github.iyotetsuya.rectangledetection.views.CameraPreview
 import io.github.iyotetsuya.rectangledetection.views.DrawView
 import io.reactivex.Observable
-import io.reactivex.ObservableTransformer
-import io.reactivex.android.schedulers.AndroidSchedulers
 import io.reactivex.disposables.Disposable
 import io.reactivex.schedulers.Schedulers
-import io.reactivex.subjects.PublishSubject
 import org.opencv.android.OpenCVLoader
-import org.opencv.core.Mat
-import org.opencv.core.Point
+import org.opencv.core.MatCleaner
+import org.opencv.core.MatScope
+import java.io.Closeable
+import java.io.File
+import java.io.FileWriter
+import java.io.IOException
 
 class MainActivity : AppCompatActivity() {
     private var disposable: Disposable? = null
 
-    private val subject = PublishSubject.create<CameraData>()
+    private val exchanger = FrameExchanger<Frame> { it.release() }
+    private var cameraPreview: CameraPreview? = null
+    // Written by the decimation stage while the later stages read older ones: one for each
+    // stage's thread and queue slot
+    private val pipelineFrames = Array(DETECT_QUEUE_CAPACITY + POST_QUEUE_CAPACITY + 3) {
+        FrameContext(if (MULTI_QUAD) MAX_QUADS else 0)
+    }
+    private var nextPipelineFrame = 0
+    private var decimateStage: PipelineStage<Frame, FrameContext>? = null
+    private val regionOfInterest: RegionOfInterest? = if (ROI && !MULTI_QUAD) RegionOfInterest(ROI_MARGIN) else null
+    private var stages: List<PipelineStage<*, *>> = emptyList()
+    private var detectorPool: DetectorPool<Frame>? = null
+    private var lastDetectionStart = 0L
+    private var frameSource: FrameSource? = null
+    @Volatile
+    private var recorder: FrameRecorder? = null
+    // Every frame a detector worker holds keeps a buffer out of the frame source, and so does
+    // every frame the pipeline keeps for corner refinement
+    private val frameBufferCount = PREVIEW_BUFFER_COUNT + DETECTOR_WORKERS +
+            if (REFINE) DETECT_QUEUE_CAPACITY + 1 else 0
+    private val detectors: List<QuadDetector> = (if (NativeQuadDetector.isAvailable) {
+        listOf(JavaQuadDetector(), OpenCVQuadDetector(), NativeQuadDetector())
+    } else {
+        listOf(JavaQuadDetector(), OpenCVQuadDetector())
+    }).filter { !MULTI_QUAD || it is MultiQuadDetector }
+            .map { if (TRACKING && !ROI && !MULTI_QUAD) TrackingQuadDetector(it) else it }
+    @Volatile
+    private var detector: QuadDetector = detectors[0]
 
     override fun onCreate(savedInstanceState: Bundle?) {
         super.onCreate(savedInstanceState)
@@ -42,7 +95,40 @@ class MainActivity : AppCompatActivity() {
 
     override fun onDestroy() {
         super.onDestroy()
+        frameSource?.close()
         this.disposable?.dispose()
+        stages.forEach { it.stop() }
+        // Pool workers close their own detectors once their last frame is done
+        detectorPool?.close()
+        detectors.forEach { (backendOf(it) as? Closeable)?.close() }
+        stages.forEach { Log.v(TAG, it.toString()) }
+        Log.v(TAG, "dropped frames: " + exchanger.droppedFrames + "/" + exchanger.offeredFrames)
+        Log.v(TAG, OpenCVHelper.matPool.toString())
+        detectors.filterIsInstance<TrackingQuadDetector>().forEach {
+            Log.v(TAG, backendOf(it).javaClass.simpleName + " detected: " + it.detectedFrames +
+                    ", tracked: " + it.trackedFrames)
+        }
+        Log.v(TAG, "Mats pending: " + MatCleaner.getPendingCount() + ", reclaimed: " +
+                MatCleaner.getReclaimedCount() + ", released: " + MatCleaner.getReleasedCount())
+        this.cameraPreview?.let {
+            Log.v(TAG, "preview buffers in use: " + it.buffersInUse + "/" + it.previewBufferCount +
+                    ", starved: " + it.bufferStarvationCount)
+        }
+        (frameSource as? ReplayFrameSource)?.let {
+            Log.v(TAG, "replayed frames: " + it.deliveredFrames + "/" + it.frameCount +
+                    ", dropped: " + it.droppedFrames)
+        }
+        recorder?.let {
+            Log.v(TAG, "recorded frames: " + it.frameCount)
+            try {
+                it.close()
+            } catch (e: IOException) {
+                Log.w(TAG, "Failed to finish recording: " + e.message)
+            }
+        }
+        if (TRACE) {
+            writeTrace()
+        }
     }
 
     override fun onRequestPermissionsResult(requestCode: Int, permissions: Array<String>,
@@ -58,48 +144,437 @@ class MainActivity : AppCompatActivity() {
     }
 
     private fun init() {
+        Tracer.setEnabled(TRACE)
         val cameraPreview = CameraPreview(this)
+        this.cameraPreview = cameraPreview
         val layout = findViewById<FrameLayout>(R.id.root_view)
         cameraPreview.init()
+        cameraPreview.setPreviewBufferCount(frameBufferCount)
         layout.addView(cameraPreview, 0,
                 FrameLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT,
                         ViewGroup.LayoutParams.MATCH_PARENT))
-        cameraPreview.setCallback { data, camera ->
-            val size = camera.parameters.previewSize
-            val cameraData = CameraData(data, size.width, size.height)
-            subject.onNext(cameraData)
-        }
         cameraPreview.setOnClickListener { cameraPreview.focus() }
+        cameraPreview.setOnLongClickListener {
+            toggleDetector()
+            true
+        }
         val drawView = findViewById<DrawView>(R.id.draw_layout)
-        disposable = subject.concatMap { (data, width, height) -> OpenCVHelper.getRgbMat(data, width, height) }
-                .concatMap { rgbMat -> OpenCVHelper.resize(rgbMat, SIZE.toFloat(), SIZE.toFloat()) }
-                .concatMap { mat ->
-                    val ratio = cameraPreview.height.toFloat() / mat.height()
-                    detectRect(mat, ratio)
-                }
-                .compose(mainAsync())
-                .subscribe { path ->
+        drawView?.setHardwareLayer(OVERLAY_HARDWARE_LAYER)
+        if (SMOOTHING) {
+            drawView?.setCornerFilter(CornerKalmanFilter(CORNER_ACCELERATION, CORNER_ERROR,
+                    CORNER_TIMEOUT_NANOS, CORNER_GATE))
+        }
+        if ((ROI || REFINE) && !LUMA_ONLY) {
+            Log.w(TAG, "ROI and REFINE only apply to the luma path")
+        }
+        if (LUMA_ONLY && DETECTOR_WORKERS > 0) {
+            startDetectorPool(cameraPreview, drawView)
+        } else if (PIPELINED && LUMA_ONLY) {
+            startPipeline(cameraPreview, drawView)
+        } else {
+            startProcessing(cameraPreview, drawView)
+        }
+        startFrames(cameraPreview)
+    }
+
+    /**
+     * Runs the whole detection of each frame synchronously through the steps of
+     * [newFrameProcessor] on a thread of its own, picking up the newest frame each time it is done
+     * with one. Rx only brings the frames in; the steps share one reused [FrameContext].
+     */
+    private fun startProcessing(cameraPreview: CameraPreview, drawView: DrawView?) {
+        val processor = newFrameProcessor()
+        val context = FrameContext()
+        disposable = latestFrames()
+                .subscribeOn(Schedulers.newThread())
+                .subscribe { frame ->
+                    val width = frame.width
+                    val height = frame.height
+                    context.reset(frame)
+                    try {
+                        // Every Mat of this frame that is not pooled is freed when the frame is done
+                        MatScope.open().use { processor.process(context) }
+                    } finally {
+                        context.releaseFrame()
+                    }
                     if (drawView != null) {
-                        drawView.setPath(path)
-                        drawView.invalidate()
+                        present(drawView, if (context.isFound) {
+                            toViewCorners(context.corners, width, height, cameraPreview)
+                        } else {
+                            null
+                        }, context.timestampNanos)
                     }
                 }
     }
 
-    private fun detectRect(mat: Mat, ratio: Float): Observable<Path> {
-        return Observable.just(mat)
-                .concatMap { resizeMat ->
-                    OpenCVHelper.getMonochromeMat(resizeMat)
-                            .flatMap { monoChromeMat -> OpenCVHelper.getContoursMat(monoChromeMat, resizeMat) }
-                            .flatMap { points -> Observable.just(points).flatMapIterable { e -> e }.map { e -> Point(e.x * ratio, e.y * ratio) }.toList().toObservable() }
-                            .flatMap { points -> OpenCVHelper.getPath(points) }
+    /**
+     * Returns the steps that leave the quad of a frame in frame coordinates in its context: those
+     * of [OpenCVFrameStages] without [LUMA_ONLY], otherwise decimation and detection with the
+     * current [detector] in the [regionOfInterest], with the corners refined on the full frame
+     * with [REFINE], or the single native call of a [NativeQuadDetector] when neither is set, since
+     * that call always searches the whole frame and refines nothing.
+     */
+    private fun newFrameProcessor(): FrameProcessor {
+        if (!LUMA_ONLY) {
+            return OpenCVFrameStages(SIZE).addTo(FrameProcessorChain())
+        }
+        // The detector can be switched at any time, but stays the same for all steps of a frame
+        var frameDetector = detector
+        val rectangleDetector = RectangleDetector(QuadDetector { gray, width, height, corners ->
+            frameDetector.detect(gray, width, height, corners)
+        }, DETECT_SIZE.toFloat(), DETECT_SIZE.toFloat(), regionOfInterest)
+        if (REFINE) {
+            rectangleDetector.setCornerRefiner(SubPixelCornerRefiner())
+        }
+        val fused = regionOfInterest == null && !REFINE
+        return FrameProcessorChain()
+                .add("decimate") { context ->
+                    frameDetector = detector
+                    if (!fused || frameDetector !is NativeQuadDetector) {
+                        val frame = context.frame
+                        rectangleDetector.decimate(frame.data, frame.width, frame.height, context.luma)
+                    }
+                }
+                .add("detect") { context ->
+                    val detector = frameDetector
+                    val frame = context.frame
+                    context.isFound = if (fused && detector is NativeQuadDetector) {
+                        detector.detectLuma(frame.data, frame.width, frame.height, SIZE, context.corners)
+                    } else {
+                        rectangleDetector.detect(context.luma, frame.data, context.corners)
+                    }
                 }
     }
 
+    /**
+     * Feeds the frames of the camera, or of the [REPLAY_FILE] recording with [REPLAY], to
+     * whichever of the detector pool, the pipeline and the synchronous processing was started.
+     */
+    private fun startFrames(cameraPreview: CameraPreview) {
+        val frameSource = newFrameSource(cameraPreview)
+        this.frameSource = frameSource
+        frameSource.start(FrameSource.Listener { cameraData ->
+            if (RECORD && !REPLAY) {
+                record(cameraData)
+            }
+            // DrawView fills in the frames in between, but tracking needs every frame
+            if (SMOOTHING && !TRACKING) {
+                if (cameraData.timestampNanos - lastDetectionStart < DETECTION_INTERVAL_NANOS) {
+                    cameraData.release()
+                    return@Listener
+                }
+                lastDetectionStart = cameraData.timestampNanos
+            }
+            val detectorPool = this.detectorPool
+            val decimateStage = this.decimateStage
+            if (detectorPool != null) {
+                if (!detectorPool.trySubmit(cameraData, cameraData.data, cameraData.width, cameraData.height)) {
+                    cameraData.release()
+                }
+            } else if (decimateStage != null) {
+                decimateStage.offerLatest(cameraData)
+            } else {
+                exchanger.offer(cameraData)
+            }
+        })
+    }
+
+    private fun newFrameSource(cameraPreview: CameraPreview): FrameSource {
+        if (REPLAY) {
+            val file = File(getExternalFilesDir(null), REPLAY_FILE)
+            try {
+                return ReplayFrameSource(file, REPLAY_PACING, frameBufferCount)
+            } catch (e: IOException) {
+                Log.w(TAG, "Failed to open " + file + ", using the camera: " + e.message)
+            }
+        }
+        return CameraFrameSource(cameraPreview)
+    }
+
+    /**
+     * Appends [frame] to the [RECORD_FILE] recording, which is started with the first frame.
+     * Called on the frame source's thread.
+     */
+    private fun record(frame: Frame) {
+        try {
+            val recorder = this.recorder ?: FrameRecorder(File(getExternalFilesDir(null), RECORD_FILE),
+                    frame.width, frame.height).also { this.recorder = it }
+            recorder.write(frame)
+        } catch (e: IOException) {
+            Log.w(TAG, "Failed to record frame: " + e.message)
+        }
+    }
+
+    /**
+     * Runs decimation, detection and path building on three threads, so consecutive frames
+     * overlap instead of waiting for each other. The camera callback feeds the first stage and
+     * drops the oldest pending frame when it falls behind. Each frame's [FrameContext] goes
+     * through all three, with the work of the first two as [FrameProcessorChain] steps.
+     */
+    private fun startPipeline(cameraPreview: CameraPreview, drawView: DrawView?) {
+        val postStage = PipelineStage<FrameContext, Unit>("postprocess", POST_QUEUE_CAPACITY) { context ->
+            present(drawView, context, cameraPreview)
+        }
+        // Decimation and detection run on different threads, which RectangleDetector allows
+        val rectangleDetector = RectangleDetector(object : MultiQuadDetector {
+            override fun detect(gray: ByteArray, width: Int, height: Int, corners: FloatArray): Boolean {
+                return detector.detect(gray, width, height, corners)
+            }
+
+            override fun detectAll(gray: ByteArray, width: Int, height: Int, quads: QuadList): Int {
+                // Only multi-quad detectors are offered in MULTI_QUAD mode
+                return (detector as MultiQuadDetector).detectAll(gray, width, height, quads)
+            }
+        }, DETECT_SIZE.toFloat(), DETECT_SIZE.toFloat(), regionOfInterest)
+        if (REFINE) {
+            rectangleDetector.setCornerRefiner(SubPixelCornerRefiner())
+        }
+        val decimate = FrameProcessorChain().add("decimate") { context ->
+            val frame = context.frame
+            rectangleDetector.decimate(frame.data, frame.width, frame.height, context.luma)
+        }
+        val detect = FrameProcessorChain().add("detect") { context ->
+            context.isFound = if (MULTI_QUAD) {
+                rectangleDetector.detectAll(context.luma, context.frame?.data, context.quads) > 0
+            } else {
+                rectangleDetector.detect(context.luma, context.frame?.data, context.corners)
+            }
+        }
+        val detectStage = PipelineStage<FrameContext, FrameContext>("detect", DETECT_QUEUE_CAPACITY,
+                { it.releaseFrame() }) { context ->
+            try {
+                MatScope.open().use { detect.process(context) }
+            } finally {
+                context.releaseFrame()
+            }
+            context
+        }
+        val decimateStage = PipelineStage<Frame, FrameContext>("decimate", 1, { it.release() }) { cameraData ->
+            val context = pipelineFrames[nextPipelineFrame]
+            nextPipelineFrame = (nextPipelineFrame + 1) % pipelineFrames.size
+            context.reset(cameraData)
+            try {
+                decimate.process(context)
+            } finally {
+                // The refiner needs the full-resolution frame until detection is done
+                if (!REFINE) {
+                    context.releaseFrame()
+                }
+            }
+            context
+        }
+        postStage.start { }
+        detectStage.start(postStage::put)
+        decimateStage.start(detectStage::put)
+        this.decimateStage = decimateStage
+        stages = listOf(decimateStage, detectStage, postStage)
+    }
+
+    /**
+     * Detects on [DETECTOR_WORKERS] threads, each with its own [RectangleDetector], and draws the
+     * results in frame order. Frames arriving while every worker is busy are dropped.
+     */
+    private fun startDetectorPool(cameraPreview: CameraPreview, drawView: DrawView?) {
+        val factory = DetectorPool.Factory {
+            val rectangleDetector = RectangleDetector(newQuadDetector(), DETECT_SIZE.toFloat(),
+                    DETECT_SIZE.toFloat(), regionOfInterest)
+            if (REFINE) {
+                rectangleDetector.setCornerRefiner(SubPixelCornerRefiner())
+            }
+            rectangleDetector
+        }
+        detectorPool = DetectorPool<Frame>(DETECTOR_WORKERS, DETECTOR_WORKERS, factory) { cameraData, detection ->
+            val time = cameraData.timestampNanos
+            cameraData.release()
+            if (drawView != null) {
+                // Each detection has corners of its own
+                present(drawView, if (detection.isFound) {
+                    toViewCorners(detection.corners, detection.width, detection.height, cameraPreview)
+                } else {
+                    null
+                }, time)
+            }
+        }
+    }
+
+    /**
+     * Returns a new detector of the currently selected backend, for a thread of its own.
+     */
+    private fun newQuadDetector(): QuadDetector {
+        // Frames of a stream reach the workers out of order, so they cannot track
+        return when (backendOf(detector)) {
+            is OpenCVQuadDetector -> OpenCVQuadDetector()
+            is NativeQuadDetector -> NativeQuadDetector()
+            else -> JavaQuadDetector()
+        }
+    }
+
+    /**
+     * Hands what was found in [context] to [drawView]: its quad like [present], or every quad of
+     * [MULTI_QUAD] mode as a path, since the corner filter follows one quad. The quad's corners
+     * are mapped to the view in place.
+     */
+    private fun present(drawView: DrawView?, context: FrameContext, cameraPreview: CameraPreview) {
+        if (drawView == null) {
+            return
+        }
+        val width = context.luma.frameWidth
+        val height = context.luma.frameHeight
+        if (MULTI_QUAD) {
+            showPath(drawView, toViewPath(context.quads, width, height, cameraPreview))
+        } else {
+            present(drawView, if (context.isFound) {
+                toViewCorners(context.corners, width, height, cameraPreview)
+            } else {
+                null
+            }, context.timestampNanos)
+        }
+    }
+
+    /**
+     * Hands the quad [corners] in view coordinates, or null when none was found, in the frame
+     * captured at [timeNanos] to [drawView], which copies them before returning.
+     */
+    private fun present(drawView: DrawView, corners: FloatArray?, timeNanos: Long) {
+        if (SMOOTHING) {
+            // The filter extrapolates from when the frame was captured, not from when detection
+            // on it finished
+            drawView.postDetection(corners, timeNanos)
+        } else {
+            drawView.setCorners(corners)
+        }
+    }
+
+    /**
+     * Maps [corners] of a [width] x [height] frame to the view, in place, and returns them.
+     */
+    private fun toViewCorners(corners: FloatArray, width: Int, height: Int,
+                              cameraPreview: CameraPreview): FloatArray {
+        val rotation = cameraPreview.displayOrientation
+        val ratio = cameraPreview.height.toFloat() / CornerTransform.rotatedHeight(width, height, rotation)
+        for (i in 0 until 4) {
+            CornerTransform.rotate(corners[2 * i].toDouble(), corners[2 * i + 1].toDouble(), rotation,
+                    width, height, ratio, corners, 2 * i)
+        }
+        return corners
+    }
+
+    private fun toViewPath(quads: QuadList, width: Int, height: Int, cameraPreview: CameraPreview): Path {
+        val path = Path()
+        val corners = FloatArray(8)
+        for (i in 0 until quads.size()) {
+            quads.getCorners(i, corners)
+            toViewCorners(corners, width, height, cameraPreview)
+            path.moveTo(corners[0], corners[1])
+            for (j in 1 until 4) {
+                path.lineTo(corners[2 * j], corners[2 * j + 1])
+            }
+            path.close()
+        }
+        return path
+    }
+
+    private fun showPath(drawView: DrawView, path: Path) {
+        runOnUiThread {
+            drawView.setPath(path)
+            drawView.invalidate()
+        }
+    }
+
+    /**
+     * Emits the newest preview frame each time the previous one has been processed. Every stage
+     * downstream runs synchronously on the subscribing thread, so nothing queues up behind a slow
+     * detection; frames that arrive meanwhile are conflated by [exchanger].
+     */
+    private fun latestFrames(): Observable<Frame> {
+        return Observable.create { sub ->
+            sub.setCancellable { exchanger.close() }
+            while (!sub.isDisposed) {
+                val cameraData = exchanger.take() ?: break
+                sub.onNext(cameraData)
+            }
+            sub.onComplete()
+        }
+    }
+
+    /**
+     * Saves the recorded spans to trace.json in the app's external files directory; open it in
+     * Perfetto or chrome://tracing.
+     */
+    private fun writeTrace() {
+        val file = File(getExternalFilesDir(null), TRACE_FILE)
+        try {
+            FileWriter(file).use { writer ->
+                val spans = Tracer.writeChromeTrace(writer)
+                Log.v(TAG, "wrote " + spans + " spans to " + file)
+            }
+        } catch (e: IOException) {
+            Log.w(TAG, "Failed to write trace: " + e.message)
+        }
+    }
+
+    /**
+     * Cycles through the detector backends: pure Java, OpenCV, and the fused native one when it
+     * was built. Only used for the luma path.
+     */
+    private fun toggleDetector() {
+        val detector = detectors[(detectors.indexOf(this.detector) + 1) % detectors.size]
+        this.detector = detector
+        Toast.makeText(this, backendOf(detector).javaClass.simpleName, Toast.LENGTH_SHORT).show()
+    }
+
     companion object {
         private val TAG = MainActivity::class.java.simpleName
         private const val REQUEST_CAMERA = 1
         private const val SIZE = 400
+        private const val PREVIEW_BUFFER_COUNT = 3
+        // Detect on the NV21 Y plane instead of a full RGB conversion
+        private const val LUMA_ONLY = false
+        // Follow a detected quad with optical flow and only re-detect from time to time
+        private const val TRACKING = false
+        // Only search around the last quad, at the scale of the whole frame, on the luma path.
+        // Tracking works on whole working images, so it is off in this mode, and so is the fused
+        // native call, which searches whole frames; the native backend then runs like the others
+        private const val ROI = false
+        private const val ROI_MARGIN = 0.25f
+        // Detect on a COARSE_SIZE image and refine the corners on the full-resolution frame, on
+        // every luma path. The native backend then runs on the working image like the others
+        private const val REFINE = false
+        private const val COARSE_SIZE = 200
+        private val DETECT_SIZE = if (REFINE) COARSE_SIZE else SIZE
+        // Detect at DETECTION_RATE and let DrawView predict the corners at display rate. With
+        // TRACKING, every frame is still processed, since tracking needs consecutive ones
+        private const val SMOOTHING = false
+        private const val DETECTION_RATE = 10
+        private const val DETECTION_INTERVAL_NANOS = 1000000000L / DETECTION_RATE
+        // Corner filter parameters, in view pixels
+        private const val CORNER_ACCELERATION = 3000.0
+        private const val CORNER_ERROR = 5.0
+        private const val CORNER_TIMEOUT_NANOS = 300000000L
+        private const val CORNER_GATE = 100.0
+        // Draw every document in view, up to MAX_QUADS, instead of the best one only. Applies to
+        // the pipeline; needs detectors that can find several quads, and turns off tracking,
+        // smoothing and the region of interest, which follow a single quad
+        private const val MULTI_QUAD = false
+        private const val MAX_QUADS = 8
+        // Keep the overlay on a hardware layer of its own
+        private const val OVERLAY_HARDWARE_LAYER = false
+        // Run the luma path as a three-stage pipeline instead of on one thread
+        private const val PIPELINED = false
+        private const val DETECT_QUEUE_CAPACITY = 1
+        private const val POST_QUEUE_CAPACITY = 1
+        // Above 0, the luma path detects on this many threads instead of the pipeline
+        private const val DETECTOR_WORKERS = 0
+        // Save the camera frames to RECORD_FILE in the app's external files directory, or play
+        // REPLAY_FILE from there instead of the camera, with REPLAY_PACING
+        private const val RECORD = false
+        private const val RECORD_FILE = "frames.nv21"
+        private const val REPLAY = false
+        private const val REPLAY_FILE = "frames.nv21"
+        private val REPLAY_PACING = ReplayFrameSource.Pacing.REAL_TIME
+        // Record per-stage spans and save them as a Chrome trace when the activity is destroyed
+        private const val TRACE = false
+        private const val TRACE_FILE = "trace.json"
 
         init {
             if (!OpenCVLoader.initDebug()) {
@@ -107,10 +582,8 @@ class MainActivity : AppCompatActivity() {
             }
         }
 
-        private fun <T> mainAsync(): ObservableTransformer<T, T> {
-            return ObservableTransformer { obs ->
-                obs.subscribeOn(Schedulers.newThread()).observeOn(AndroidSchedulers.mainThread())
-            }
+        private fun backendOf(detector: QuadDetector): QuadDetector {
+            return (detector as? TrackingQuadDetector)?.detector ?: detector
         }
     }
 }
@@ -1,3 +0,0 @@
-package io.github.iyotetsuya.rectangledetection.models
-
-data class CameraData(val data: ByteArray, val width: Int, val height: Int)
@@ -0,0 +1,26 @@
+package io.github.iyotetsuya.rectangledetection.utils
+
+import io.github.iyotetsuya.rectangledetection.detector.Frame
+import io.github.iyotetsuya.rectangledetection.detector.FrameSource
+import io.github.iyotetsuya.rectangledetection.views.CameraPreview
+
+/**
+ * [FrameSource] for the preview frames of [cameraPreview], delivered on the camera thread and
+ * timestamped on arrival. Releasing a frame hands its buffer back to the camera.
+ */
+class CameraFrameSource(private val cameraPreview: CameraPreview) : FrameSource {
+
+    override fun start(listener: FrameSource.Listener) {
+        cameraPreview.setCallback { data, camera ->
+            // Camera.getParameters() parses the whole parameter string into a new object
+            val size = cameraPreview.configuredPreviewSize ?: camera.parameters.previewSize
+            listener.onFrame(Frame(data, size.width, size.height, System.nanoTime()) {
+                cameraPreview.releaseBuffer(it)
+            })
+        }
+    }
+
+    override fun close() {
+        cameraPreview.setCallback(null)
+    }
+}
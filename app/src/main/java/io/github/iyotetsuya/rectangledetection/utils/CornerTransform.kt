@@ -0,0 +1,48 @@
+package io.github.iyotetsuya.rectangledetection.utils
+
+/**
+ * Maps points found in the sensor-oriented image to the orientation the preview is displayed in,
+ * so detection never has to rotate whole frames.
+ *
+ * Rotations are clockwise in degrees (0, 90, 180, 270), as passed to
+ * `Camera.setDisplayOrientation`.
+ */
+object CornerTransform {
+    fun rotatedWidth(width: Int, height: Int, rotation: Int): Int {
+        return if (rotation == 90 || rotation == 270) height else width
+    }
+
+    fun rotatedHeight(width: Int, height: Int, rotation: Int): Int {
+        return if (rotation == 90 || rotation == 270) width else height
+    }
+
+    /**
+     * Rotates the point ([x], [y]) of a [width] x [height] image by [rotation], scales it by
+     * [ratio] and writes it to `out[offset]` and `out[offset + 1]`.
+     */
+    fun rotate(x: Double, y: Double, rotation: Int, width: Int, height: Int, ratio: Float,
+               out: FloatArray, offset: Int) {
+        val rotatedX: Double
+        val rotatedY: Double
+        when (rotation) {
+            90 -> {
+                rotatedX = height - 1 - y
+                rotatedY = x
+            }
+            180 -> {
+                rotatedX = width - 1 - x
+                rotatedY = height - 1 - y
+            }
+            270 -> {
+                rotatedX = y
+                rotatedY = width - 1 - x
+            }
+            else -> {
+                rotatedX = x
+                rotatedY = y
+            }
+        }
+        out[offset] = (rotatedX * ratio).toFloat()
+        out[offset + 1] = (rotatedY * ratio).toFloat()
+    }
+}
@@ -0,0 +1,66 @@
+package io.github.iyotetsuya.rectangledetection.utils
+
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicReference
+import java.util.concurrent.locks.LockSupport
+
+/**
+ * Single-slot, latest-frame-wins handoff between one producer (the camera callback) and one
+ * consumer (the detection thread).
+ *
+ * [offer] never blocks: if the consumer has not picked up the previous frame yet, that frame is
+ * replaced and counted as dropped. [take] always returns the newest frame, so the consumer never
+ * works on anything older than the frame that arrived while it was busy with the last one.
+ * Frames that are replaced or still pending on [close] are passed to [onDropped].
+ */
+class FrameExchanger<T : Any>(private val onDropped: (T) -> Unit = {}) {
+    private val slot = AtomicReference<T?>()
+    private val offered = AtomicLong()
+    private val dropped = AtomicLong()
+
+    @Volatile
+    private var consumer: Thread? = null
+    @Volatile
+    private var closed = false
+
+    val offeredFrames: Long
+        get() = offered.get()
+
+    val droppedFrames: Long
+        get() = dropped.get()
+
+    fun offer(frame: T) {
+        if (closed) {
+            onDropped(frame)
+            return
+        }
+        offered.incrementAndGet()
+        val previous = slot.getAndSet(frame)
+        if (previous != null) {
+            dropped.incrementAndGet()
+            onDropped(previous)
+        }
+        LockSupport.unpark(consumer)
+    }
+
+    /**
+     * Blocks until a frame is available and returns it, or returns null once [close] was called.
+     */
+    fun take(): T? {
+        consumer = Thread.currentThread()
+        while (!closed) {
+            val frame = slot.getAndSet(null)
+            if (frame != null) {
+                return frame
+            }
+            LockSupport.park(this)
+        }
+        return null
+    }
+
+    fun close() {
+        closed = true
+        slot.getAndSet(null)?.let(onDropped)
+        LockSupport.unpark(consumer)
+    }
+}
@@ -0,0 +1,77 @@
+package io.github.iyotetsuya.rectangledetection.utils
+
+import android.util.Log
+import io.github.iyotetsuya.rectangledetection.detector.QuadDetector
+import java.io.Closeable
+
+/**
+ * Runs the whole per-frame pipeline (decimation, edges, contours, quad test) in native code with
+ * scratch buffers that are kept between frames, so a frame costs a single JNI call.
+ *
+ * Not thread-safe; use one instance per thread. The native buffers are freed by [close] only, which
+ * may be called from any thread and waits for a detection in progress.
+ */
+class NativeQuadDetector : QuadDetector, Closeable {
+    private var handle = nativeCreate()
+    private val result = FloatArray(RESULT_LENGTH)
+
+    /**
+     * Last score written by a successful detection: the quad area relative to the working image.
+     */
+    var score = 0f
+        private set
+
+    override fun detect(gray: ByteArray, width: Int, height: Int, corners: FloatArray): Boolean {
+        return detectLuma(gray, width, height, Math.max(width, height), corners)
+    }
+
+    /**
+     * Detects on the Y plane of a full NV21 frame, decimated natively to fit in
+     * [workSize] x [workSize]. [corners] are in the coordinates of the full frame.
+     *
+     * @throws IllegalArgumentException if a size is not positive or [data] is smaller than
+     * [width] x [height]
+     */
+    @Synchronized
+    fun detectLuma(data: ByteArray, width: Int, height: Int, workSize: Int, corners: FloatArray): Boolean {
+        check(handle != 0L) { "detector is closed" }
+        if (!nativeDetect(handle, data, width, height, workSize, result)) {
+            return false
+        }
+        System.arraycopy(result, 0, corners, 0, 8)
+        score = result[8]
+        return true
+    }
+
+    @Synchronized
+    override fun close() {
+        if (handle != 0L) {
+            nativeDestroy(handle)
+            handle = 0L
+        }
+    }
+
+    private external fun nativeCreate(): Long
+
+    private external fun nativeDestroy(handle: Long)
+
+    private external fun nativeDetect(handle: Long, data: ByteArray, width: Int, height: Int,
+                                      workSize: Int, result: FloatArray): Boolean
+
+    companion object {
+        private val TAG = NativeQuadDetector::class.java.simpleName
+        private const val RESULT_LENGTH = 9
+
+        /**
+         * Whether the native library was built into this APK; see `opencvIncludeDir` in
+         * app/build.gradle.
+         */
+        val isAvailable: Boolean = try {
+            System.loadLibrary("quad_detector")
+            true
+        } catch (e: UnsatisfiedLinkError) {
+            Log.v(TAG, "native detector not available: " + e.message)
+            false
+        }
+    }
+}
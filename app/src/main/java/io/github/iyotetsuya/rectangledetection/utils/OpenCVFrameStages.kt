@@ -0,0 +1,65 @@
+package io.github.iyotetsuya.rectangledetection.utils
+
+import io.github.iyotetsuya.rectangledetection.detector.ContourKernel
+import io.github.iyotetsuya.rectangledetection.detector.FrameContext
+import io.github.iyotetsuya.rectangledetection.detector.FrameProcessorChain
+import org.opencv.core.Mat
+import org.opencv.core.MatOfPoint
+
+/**
+ * The full-color OpenCV path as [FrameProcessorChain] steps: NV21 to RGB, resizing to fit in
+ * [size] x [size], binarization and contour filtering. The Mats passed from one step to the next
+ * are kept here rather than in the [FrameContext], and handed back to [OpenCVHelper.matPool] by
+ * the last step. Not thread-safe; use one instance per processing thread.
+ */
+class OpenCVFrameStages(private val size: Int) {
+    private val kernel = ContourKernel(OpenCVHelper.MAX_CANDIDATES)
+    private val contours = ArrayList<MatOfPoint>()
+    private var rgb: Mat? = null
+    private var resized: Mat? = null
+    private var monoChrome: Mat? = null
+
+    /**
+     * Appends the steps to [chain]; they leave the quad in frame coordinates in the context.
+     */
+    fun addTo(chain: FrameProcessorChain): FrameProcessorChain {
+        return chain
+                .add("getRgbMat") { context ->
+                    val frame = context.frame
+                    rgb = OpenCVHelper.getRgbMat(frame.data, frame.width, frame.height)
+                }
+                .add("resize") {
+                    // The RGB Mat goes back to the pool
+                    resized = OpenCVHelper.resize(rgb!!, size.toFloat(), size.toFloat())
+                    rgb = null
+                }
+                .add("getMonochrome") {
+                    monoChrome = OpenCVHelper.getMonochrome(resized!!)
+                }
+                .add("findQuad") { context -> findQuad(context) }
+    }
+
+    private fun findQuad(context: FrameContext) {
+        val resized = this.resized!!
+        val monoChrome = this.monoChrome!!
+        val corners = context.corners
+        context.isFound = OpenCVHelper.findQuad(monoChrome, corners, OpenCVHelper.matPool, kernel, contours) >= 0
+        for (contour in contours) {
+            contour.release()
+        }
+        contours.clear()
+        if (context.isFound) {
+            val frame = context.frame
+            val scaleX = frame.width.toFloat() / resized.cols()
+            val scaleY = frame.height.toFloat() / resized.rows()
+            for (i in 0 until 4) {
+                corners[2 * i] *= scaleX
+                corners[2 * i + 1] *= scaleY
+            }
+        }
+        OpenCVHelper.recycle(monoChrome)
+        OpenCVHelper.recycle(resized)
+        this.monoChrome = null
+        this.resized = null
+    }
+}
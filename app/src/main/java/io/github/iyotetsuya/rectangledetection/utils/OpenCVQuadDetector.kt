@@ -0,0 +1,62 @@
+package io.github.iyotetsuya.rectangledetection.utils
+
+import io.github.iyotetsuya.rectangledetection.detector.ContourKernel
+import io.github.iyotetsuya.rectangledetection.detector.MultiQuadDetector
+import io.github.iyotetsuya.rectangledetection.detector.QuadList
+import io.github.iyotetsuya.rectangledetection.detector.Tracer
+import org.opencv.core.CvType
+import org.opencv.core.MatOfPoint
+import org.opencv.core.MatPool
+
+/**
+ * [MultiQuadDetector] backed by the OpenCV stages of [OpenCVHelper]. Each instance keeps its
+ * scratch Mats in its own pool, so instances on different threads share no buffers.
+ */
+class OpenCVQuadDetector : MultiQuadDetector {
+    private val pool = MatPool(POOL_CAPACITY)
+    private val kernel = ContourKernel(OpenCVHelper.MAX_CANDIDATES)
+    private val contours = ArrayList<MatOfPoint>()
+    private var edges = ByteArray(0)
+
+    override fun detect(gray: ByteArray, width: Int, height: Int, corners: FloatArray): Boolean {
+        val mat = pool.acquire(height, width, CvType.CV_8UC1)
+        mat.put(0, 0, gray)
+        val monoChrome = OpenCVHelper.getMonochrome(mat, pool)
+        val id = OpenCVHelper.findQuad(monoChrome, corners, pool, kernel, contours)
+        releaseContours()
+        pool.release(monoChrome)
+        pool.release(mat)
+        return id >= 0
+    }
+
+    override fun detectAll(gray: ByteArray, width: Int, height: Int, quads: QuadList): Int {
+        val mat = pool.acquire(height, width, CvType.CV_8UC1)
+        mat.put(0, 0, gray)
+        val monoChrome = OpenCVHelper.getMonochrome(mat, pool)
+        val span = Tracer.begin()
+        OpenCVHelper.offerContours(monoChrome, pool, kernel, contours)
+        releaseContours()
+        // The kernel measures edge support on the binary image the contours came from
+        if (edges.size < width * height) {
+            edges = ByteArray(width * height)
+        }
+        monoChrome.get(0, 0, edges)
+        pool.release(monoChrome)
+        pool.release(mat)
+        val count = kernel.findQuads(edges, quads)
+        Tracer.end("findQuads", span)
+        return count
+    }
+
+    private fun releaseContours() {
+        for (contour in contours) {
+            contour.release()
+        }
+        contours.clear()
+    }
+
+    companion object {
+        // Enough for every Mat one detection holds at once
+        private const val POOL_CAPACITY = 8
+    }
+}
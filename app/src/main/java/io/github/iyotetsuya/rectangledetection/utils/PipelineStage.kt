@@ -0,0 +1,148 @@
+package io.github.iyotetsuya.rectangledetection.utils
+
+import android.util.Log
+import io.github.iyotetsuya.rectangledetection.detector.Tracer
+import java.util.concurrent.ArrayBlockingQueue
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * One stage of a frame pipeline: a dedicated thread that takes items from a bounded queue, runs
+ * [process] on them and hands each non-null result downstream.
+ *
+ * Stages are chained by passing the next stage's [put] to [start]. [put] blocks while the queue
+ * is full, so a slow stage holds back the ones before it instead of letting frames pile up; the
+ * first stage is fed with [offerLatest], which drops the oldest queued item instead of blocking.
+ * While every stage is busy with a different frame, throughput is bounded by the slowest stage
+ * rather than by the sum of all of them.
+ *
+ * Items that are dropped, still queued when the stage is stopped, handed to [put] by a stage
+ * that is interrupted while waiting for room, or on which [process] throws are passed to
+ * [onDiscarded]. A [RuntimeException] from [process] is logged and the stage goes on with the next
+ * item.
+ */
+class PipelineStage<I : Any, O : Any>(val name: String, capacity: Int,
+                                      private val onDiscarded: (I) -> Unit = {},
+                                      private val process: (I) -> O?) {
+    private val queue = ArrayBlockingQueue<I>(capacity)
+    private val processed = AtomicLong()
+    private val busyNanos = AtomicLong()
+    private val discarded = AtomicLong()
+    @Volatile
+    private var thread: Thread? = null
+    @Volatile
+    private var stopped = false
+
+    /**
+     * Number of items waiting for this stage.
+     */
+    val queueDepth: Int
+        get() = queue.size
+
+    val processedCount: Long
+        get() = processed.get()
+
+    val discardedCount: Long
+        get() = discarded.get()
+
+    /**
+     * Mean time [process] took per item, in nanoseconds.
+     */
+    val averageServiceNanos: Long
+        get() {
+            val count = processed.get()
+            return if (count == 0L) 0 else busyNanos.get() / count
+        }
+
+    /**
+     * Queues [item], waiting for room if the queue is full. If the calling thread is interrupted
+     * meanwhile, [item] is discarded before the [InterruptedException] is thrown.
+     */
+    fun put(item: I) {
+        try {
+            queue.put(item)
+        } catch (e: InterruptedException) {
+            discard(item)
+            throw e
+        }
+        // Nothing takes items any more
+        if (stopped) {
+            discardQueued()
+        }
+    }
+
+    /**
+     * Queues [item] without waiting; if the queue is full, the oldest queued items are discarded
+     * to make room.
+     */
+    fun offerLatest(item: I) {
+        while (!queue.offer(item)) {
+            queue.poll()?.let { discard(it) }
+        }
+        if (stopped) {
+            discardQueued()
+        }
+    }
+
+    fun start(downstream: (O) -> Unit) {
+        val thread = Thread({ run(downstream) }, name)
+        this.thread = thread
+        thread.start()
+    }
+
+    /**
+     * Interrupts the thread and discards the queued items, as well as any that are queued later.
+     */
+    fun stop() {
+        stopped = true
+        thread?.interrupt()
+        thread = null
+        discardQueued()
+    }
+
+    override fun toString(): String {
+        return name + " [ depth=" + queueDepth + ", processed=" + processedCount +
+                ", discarded=" + discardedCount + ", service=" + averageServiceNanos / 1000 + "us ]"
+    }
+
+    private fun run(downstream: (O) -> Unit) {
+        try {
+            while (!Thread.currentThread().isInterrupted) {
+                val item = queue.take()
+                val span = Tracer.begin()
+                val start = System.nanoTime()
+                val result = try {
+                    process(item)
+                } catch (e: RuntimeException) {
+                    Log.e(TAG, name + " failed on an item", e)
+                    discard(item)
+                    null
+                }
+                busyNanos.addAndGet(System.nanoTime() - start)
+                processed.incrementAndGet()
+                Tracer.end(name, span)
+                if (result != null) {
+                    downstream(result)
+                }
+            }
+        } catch (e: InterruptedException) {
+            // Stopped
+        } finally {
+            discardQueued()
+        }
+    }
+
+    private fun discardQueued() {
+        while (true) {
+            discard(queue.poll() ?: break)
+        }
+    }
+
+    private fun discard(item: I) {
+        discarded.incrementAndGet()
+        onDiscarded(item)
+    }
+
+    companion object {
+        private val TAG = PipelineStage::class.java.simpleName
+    }
+}
@@ -0,0 +1,79 @@
+package io.github.iyotetsuya.rectangledetection.utils
+
+import io.github.iyotetsuya.rectangledetection.detector.CornerRefiner
+import org.opencv.core.CvType
+import org.opencv.core.Mat
+import org.opencv.core.MatOfPoint2f
+import org.opencv.core.MatScope
+import org.opencv.core.Size
+import org.opencv.core.TermCriteria
+import org.opencv.imgproc.Imgproc
+import kotlin.math.abs
+import kotlin.math.ceil
+import kotlin.math.roundToInt
+
+/**
+ * [CornerRefiner] that runs `Imgproc.cornerSubPix` on a small window of the full-resolution Y
+ * plane around each corner, so only a few hundred pixels per corner are ever copied into a Mat.
+ */
+class SubPixelCornerRefiner : CornerRefiner {
+    private val window = Mat()
+    private val point = MatOfPoint2f()
+    private val winSize = Size()
+    private val zeroZone = Size(-1.0, -1.0)
+    private val criteria = TermCriteria(TermCriteria.EPS + TermCriteria.COUNT, MAX_ITERATIONS, EPSILON)
+    private val position = FloatArray(2)
+    private var patch = ByteArray(0)
+
+    init {
+        point.alloc(1)
+        // These live as long as the refiner, not as long as the frame it is created in
+        MatScope.current()?.let { scope ->
+            scope.escape(window)
+            scope.escape(point)
+        }
+    }
+
+    override fun refine(luma: ByteArray, width: Int, height: Int, corners: FloatArray, radius: Float) {
+        val half = ceil(radius).toInt().coerceAtLeast(MIN_HALF_WINDOW)
+        // Leave room for cornerSubPix to move its window by up to half its size
+        val patchRadius = 2 * half + 1
+        val size = 2 * patchRadius + 1
+        if (patch.size < size * size) {
+            patch = ByteArray(size * size)
+        }
+        window.create(size, size, CvType.CV_8UC1)
+        winSize.width = half.toDouble()
+        winSize.height = half.toDouble()
+        for (i in 0 until 4) {
+            val x = corners[2 * i]
+            val y = corners[2 * i + 1]
+            val left = x.roundToInt() - patchRadius
+            val top = y.roundToInt() - patchRadius
+            if (left < 0 || top < 0 || left + size > width || top + size > height) {
+                continue
+            }
+            for (row in 0 until size) {
+                System.arraycopy(luma, (top + row) * width + left, patch, row * size, size)
+            }
+            window.put(0, 0, patch)
+            position[0] = x - left
+            position[1] = y - top
+            point.put(0, 0, position)
+            Imgproc.cornerSubPix(window, point, winSize, zeroZone, criteria)
+            point.get(0, 0, position)
+            val refinedX = left + position[0]
+            val refinedY = top + position[1]
+            if (abs(refinedX - x) <= radius && abs(refinedY - y) <= radius) {
+                corners[2 * i] = refinedX
+                corners[2 * i + 1] = refinedY
+            }
+        }
+    }
+
+    companion object {
+        private const val MIN_HALF_WINDOW = 3
+        private const val MAX_ITERATIONS = 20
+        private const val EPSILON = 0.05
+    }
+}
@@ -0,0 +1,163 @@
+package io.github.iyotetsuya.rectangledetection.utils
+
+import io.github.iyotetsuya.rectangledetection.detector.PolygonApprox
+import io.github.iyotetsuya.rectangledetection.detector.QuadDetector
+import io.github.iyotetsuya.rectangledetection.detector.Tracer
+import org.opencv.core.CvType
+import org.opencv.core.Mat
+import org.opencv.core.MatOfByte
+import org.opencv.core.MatOfFloat
+import org.opencv.core.MatOfPoint2f
+import org.opencv.core.MatScope
+import org.opencv.core.Size
+import org.opencv.video.Video
+
+/**
+ * [QuadDetector] that runs [detector] only to lock on to a quad, then follows its corners from
+ * frame to frame with pyramidal Lucas-Kanade optical flow, which costs a fraction of a full
+ * detection.
+ *
+ * Besides the four corners, four points just inside them are tracked as a consistency check. The
+ * track is dropped, and [detector] runs again, every [redetectInterval] frames, when a corner or
+ * most interior points are lost, when the mean tracking error exceeds [maxTrackError], or when
+ * the tracked corners no longer form a convex quad inside the image.
+ *
+ * Consecutive calls must be frames of the same stream; like other detectors, an instance is not
+ * thread-safe.
+ */
+class TrackingQuadDetector(val detector: QuadDetector,
+                           private val redetectInterval: Int = REDETECT_INTERVAL,
+                           private val maxTrackError: Float = MAX_TRACK_ERROR) : QuadDetector {
+    private var previous = Mat()
+    private var current = Mat()
+    private val previousPoints = MatOfPoint2f()
+    private val nextPoints = MatOfPoint2f()
+    private val status = MatOfByte()
+    private val error = MatOfFloat()
+    private val winSize = Size(WIN_SIZE, WIN_SIZE)
+    private val points = FloatArray(2 * POINT_COUNT)
+    private val statuses = ByteArray(POINT_COUNT)
+    private val errors = FloatArray(POINT_COUNT)
+    private val polygon = IntArray(8)
+    private var tracking = false
+    private var framesSinceDetection = 0
+
+    var detectedFrames = 0L
+        private set
+    var trackedFrames = 0L
+        private set
+
+    init {
+        previousPoints.alloc(POINT_COUNT)
+        // These live as long as the detector, not as long as the frame it is created in
+        MatScope.current()?.let { scope ->
+            listOf(previous, current, previousPoints, nextPoints, status, error).forEach { scope.escape(it) }
+        }
+    }
+
+    override fun detect(gray: ByteArray, width: Int, height: Int, corners: FloatArray): Boolean {
+        current.create(height, width, CvType.CV_8UC1)
+        current.put(0, 0, gray)
+        val found = if (tracking && framesSinceDetection < redetectInterval &&
+                previous.rows() == height && previous.cols() == width) {
+            track(width, height, corners)
+        } else {
+            redetect(gray, width, height, corners)
+        }
+        val swap = previous
+        previous = current
+        current = swap
+        return found
+    }
+
+    private fun redetect(gray: ByteArray, width: Int, height: Int, corners: FloatArray): Boolean {
+        detectedFrames++
+        framesSinceDetection = 0
+        tracking = detector.detect(gray, width, height, corners)
+        if (tracking) {
+            lock(corners)
+        }
+        return tracking
+    }
+
+    private fun track(width: Int, height: Int, corners: FloatArray): Boolean {
+        val span = Tracer.begin()
+        Video.calcOpticalFlowPyrLK(previous, current, previousPoints, nextPoints, status, error,
+                winSize, MAX_LEVEL)
+        nextPoints.get(0, 0, points)
+        status.get(0, 0, statuses)
+        error.get(0, 0, errors)
+        Tracer.end("trackCorners", span)
+
+        var lostInterior = 0
+        var errorSum = 0f
+        var tracked = 0
+        for (i in 0 until POINT_COUNT) {
+            if (statuses[i].toInt() == 0) {
+                if (i < 4) {
+                    tracking = false
+                    return false
+                }
+                lostInterior++
+            } else {
+                errorSum += errors[i]
+                tracked++
+            }
+        }
+        if (lostInterior > 2 || errorSum / tracked > maxTrackError) {
+            tracking = false
+            return false
+        }
+        for (i in 0 until 4) {
+            val x = points[2 * i]
+            val y = points[2 * i + 1]
+            if (x < 0 || y < 0 || x >= width || y >= height) {
+                tracking = false
+                return false
+            }
+            polygon[2 * i] = Math.round(x)
+            polygon[2 * i + 1] = Math.round(y)
+        }
+        if (!PolygonApprox.isConvex(polygon, 4)) {
+            tracking = false
+            return false
+        }
+        System.arraycopy(points, 0, corners, 0, 8)
+        // Lost interior points are re-seeded from the corners on the next detection only
+        previousPoints.put(0, 0, points)
+        framesSinceDetection++
+        trackedFrames++
+        return true
+    }
+
+    /**
+     * Starts tracking [corners] and the points a quarter of the way from each corner to the centre.
+     */
+    private fun lock(corners: FloatArray) {
+        var centerX = 0f
+        var centerY = 0f
+        for (i in 0 until 4) {
+            centerX += corners[2 * i] / 4
+            centerY += corners[2 * i + 1] / 4
+        }
+        for (i in 0 until 4) {
+            val x = corners[2 * i]
+            val y = corners[2 * i + 1]
+            points[2 * i] = x
+            points[2 * i + 1] = y
+            points[8 + 2 * i] = x + (centerX - x) * INTERIOR_RATIO
+            points[8 + 2 * i + 1] = y + (centerY - y) * INTERIOR_RATIO
+        }
+        previousPoints.put(0, 0, points)
+    }
+
+    companion object {
+        private const val POINT_COUNT = 8
+        private const val REDETECT_INTERVAL = 15
+        // Mean absolute intensity difference per pixel of the tracking window
+        private const val MAX_TRACK_ERROR = 20f
+        private const val WIN_SIZE = 21.0
+        private const val MAX_LEVEL = 3
+        private const val INTERIOR_RATIO = 0.25f
+    }
+}
@@ -13,6 +13,8 @@ import android.widget.FrameLayout;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 @SuppressWarnings("deprecation")
 public class CameraPreview extends SurfaceView
@@ -28,12 +30,84 @@ public class CameraPreview extends SurfaceView
     protected boolean mSurfaceConfiguring = false;
     protected Camera.Size mPreviewSize;
     protected Camera.Size mPictureSize;
+    private volatile int mDisplayOrientation = 90;
+    // The size the camera was last configured with, for the camera thread
+    private volatile Camera.Size mConfiguredPreviewSize;
     private Camera.PreviewCallback callback;
 
+    // Pooled preview buffers, used when mPreviewBufferCount > 0
+    private final Object mBufferLock = new Object();
+    private int mPreviewBufferCount = 0;
+    // Replaced under mBufferLock on the UI thread, read without it on the camera thread
+    private volatile byte[][] mPreviewBuffers = new byte[0][];
+    private final AtomicInteger mBuffersInUse = new AtomicInteger();
+    private final AtomicLong mBufferStarvationCount = new AtomicLong();
+    private final Camera.PreviewCallback mPooledCallback = new Camera.PreviewCallback() {
+        @Override
+        public void onPreviewFrame(byte[] data, Camera camera) {
+            // The camera drops frames silently while it has no buffer left to fill
+            if (mBuffersInUse.incrementAndGet() >= mPreviewBuffers.length) {
+                mBufferStarvationCount.incrementAndGet();
+            }
+            if (callback != null) {
+                callback.onPreviewFrame(data, camera);
+            } else {
+                releaseBuffer(data);
+            }
+        }
+    };
+
     public void setCallback(Camera.PreviewCallback callback) {
         this.callback = callback;
     }
 
+    /**
+     * Sets the number of preview buffers the camera cycles through. With a count greater than
+     * zero, frames are delivered in pooled buffers, and each buffer goes back to the camera only
+     * when {@link #releaseBuffer(byte[])} is called for it. Zero (the default) keeps the camera
+     * allocating a new buffer for every frame. Takes effect the next time the preview starts.
+     */
+    public void setPreviewBufferCount(int count) {
+        mPreviewBufferCount = Math.max(0, count);
+    }
+
+    public int getPreviewBufferCount() {
+        return mPreviewBuffers.length;
+    }
+
+    /**
+     * Returns the number of pooled buffers currently held by the app rather than the camera.
+     */
+    public int getBuffersInUse() {
+        return mBuffersInUse.get();
+    }
+
+    /**
+     * Returns how many frames were delivered while no other buffer was queued with the camera,
+     * i.e. how often the camera had to drop frames because the pool was exhausted.
+     */
+    public long getBufferStarvationCount() {
+        return mBufferStarvationCount.get();
+    }
+
+    /**
+     * Hands a buffer received in the preview callback back to the camera. Safe to call from any
+     * thread; buffers from an earlier preview configuration are ignored.
+     */
+    public void releaseBuffer(byte[] data) {
+        synchronized (mBufferLock) {
+            for (byte[] buffer : mPreviewBuffers) {
+                if (buffer == data) {
+                    mBuffersInUse.decrementAndGet();
+                    if (mCamera != null) {
+                        mCamera.addCallbackBuffer(data);
+                    }
+                    return;
+                }
+            }
+        }
+    }
+
     public enum LayoutMode {
         FitToParent, // Scale to the size that no side is larger than the parent
         NoBlank // Scale to the size that no side is smaller than the parent
@@ -75,7 +149,7 @@ public class CameraPreview extends SurfaceView
         try {
             if (mCamera != null) {
                 mCamera.setPreviewDisplay(mHolder);
-                mCamera.setPreviewCallback(callback);
+                registerPreviewCallback();
             }
         } catch (IOException e) {
             mCamera.release();
@@ -121,9 +195,8 @@ public class CameraPreview extends SurfaceView
         mSurfaceConfiguring = false;
 
         try {
-            byte[] previewBuffer = new byte[(mPreviewSize.height * mPreviewSize.width * 3) / 2];
-            mCamera.addCallbackBuffer(previewBuffer);
-            mCamera.setPreviewCallback(callback);
+            allocatePreviewBuffers();
+            registerPreviewCallback();
             mCamera.startPreview();
         } catch (Exception e) {
             Log.w(TAG, "Failed to start preview: " + e.getMessage());
@@ -141,6 +214,26 @@ public class CameraPreview extends SurfaceView
         }
     }
 
+    private void allocatePreviewBuffers() {
+        synchronized (mBufferLock) {
+            int bufferSize = (mPreviewSize.height * mPreviewSize.width * 3) / 2;
+            mPreviewBuffers = new byte[mPreviewBufferCount][];
+            mBuffersInUse.set(0);
+            for (int i = 0; i < mPreviewBuffers.length; i++) {
+                mPreviewBuffers[i] = new byte[bufferSize];
+                mCamera.addCallbackBuffer(mPreviewBuffers[i]);
+            }
+        }
+    }
+
+    private void registerPreviewCallback() {
+        if (mPreviewBuffers.length > 0) {
+            mCamera.setPreviewCallbackWithBuffer(mPooledCallback);
+        } else {
+            mCamera.setPreviewCallback(callback);
+        }
+    }
+
     protected Camera.Size determinePreviewSize(int reqWidth, int reqHeight) {
         // Meaning of width and height is switched for preview when portrait,
         // while it is the same as user's view for surface and metrics.
@@ -264,6 +357,7 @@ public class CameraPreview extends SurfaceView
         }
         Log.v(TAG, "angle: " + angle);
         mCamera.setDisplayOrientation(angle);
+        mDisplayOrientation = angle;
 
         cameraParams.setPreviewSize(mPreviewSize.width, mPreviewSize.height);
         cameraParams.setPictureSize(mPictureSize.width, mPictureSize.height);
@@ -271,6 +365,22 @@ public class CameraPreview extends SurfaceView
         Log.v(TAG, "Picture Actual Size - w: " + mPictureSize.width + ", h: " + mPictureSize.height);
 
         mCamera.setParameters(cameraParams);
+        mConfiguredPreviewSize = mPreviewSize;
+    }
+
+    /**
+     * Returns the size of the preview frames the camera was configured with, or null before the
+     * preview is configured. Unlike {@link Camera#getParameters()}, safe to call for every frame.
+     */
+    public Camera.Size getConfiguredPreviewSize() {
+        return mConfiguredPreviewSize;
+    }
+
+    /**
+     * Returns the clockwise rotation, in degrees, applied to the sensor image for display.
+     */
+    public int getDisplayOrientation() {
+        return mDisplayOrientation;
     }
 
     @Override
@@ -282,10 +392,12 @@ public class CameraPreview extends SurfaceView
         if (null == mCamera) {
             return;
         }
-        mCamera.stopPreview();
-        mCamera.setPreviewCallback(null);
-        mCamera.release();
-        mCamera = null;
+        synchronized (mBufferLock) {
+            mCamera.stopPreview();
+            mCamera.setPreviewCallback(null);
+            mCamera.release();
+            mCamera = null;
+        }
     }
 
     public void focus() {
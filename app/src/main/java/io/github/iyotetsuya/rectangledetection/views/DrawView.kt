@@ -5,13 +5,59 @@ import android.graphics.Canvas
 import android.graphics.Color
 import android.graphics.Paint
 import android.graphics.Path
+import android.graphics.Rect
 import android.util.AttributeSet
+import android.view.Choreographer
 import android.view.View
+import io.github.iyotetsuya.rectangledetection.detector.CornerKalmanFilter
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.math.ceil
 
+/**
+ * Draws the detected quad over the camera preview.
+ *
+ * Quads come in as corner arrays through [setCorners], which any one thread may call without
+ * locking, or from the corner filter set with [setCornerFilter], which [postDetection] feeds the
+ * same way. Both redraw the same [Path], rewound rather than replaced, and invalidate only the
+ * area the old and new quad cover, so drawing a quad allocates nothing.
+ */
 class DrawView : View {
     private var paint: Paint = Paint()
     private var path: Path = Path()
+    private val quadPath = path
+    private var cornerFilter: CornerKalmanFilter? = null
+    private val corners = FloatArray(8)
+    private var animating = false
+    private val frameCallback = Choreographer.FrameCallback { frameTimeNanos -> onVsync(frameTimeNanos) }
 
+    // Corner arrays handed from the caller of setCorners or postDetection to the UI thread: the
+    // writer owns one, the UI thread another, and the third is the latest one published, tagged
+    // with PUBLISHED until the UI thread has picked it up. Detections carry their capture time
+    private val cornerBuffers = Array(3) { FloatArray(8) }
+    private val cornersFound = BooleanArray(3)
+    private val cornersDetected = BooleanArray(3)
+    private val cornerTimes = LongArray(3)
+    private val publishedBuffer = AtomicInteger(2)
+    private var writeBuffer = 0
+    private var readBuffer = 1
+    private val applyPosted = AtomicBoolean()
+    private val applyCorners = Runnable {
+        applyPosted.set(false)
+        val published = publishedBuffer.get() and PUBLISHED != 0
+        if (published) {
+            readBuffer = publishedBuffer.getAndSet(readBuffer) and PUBLISHED.inv()
+        }
+        if (!cornersDetected[readBuffer]) {
+            showQuad(cornerBuffers[readBuffer], cornersFound[readBuffer])
+        } else if (published) {
+            // A detection is fed to the filter once only
+            addDetection(if (cornersFound[readBuffer]) cornerBuffers[readBuffer] else null,
+                    cornerTimes[readBuffer])
+        }
+    }
+    private val quadBounds = Rect()
+    private val dirty = Rect()
 
     constructor(context: Context) : this(context, null)
 
@@ -30,7 +76,135 @@ class DrawView : View {
         }
     }
 
+    override fun onDetachedFromWindow() {
+        super.onDetachedFromWindow()
+        Choreographer.getInstance().removeFrameCallback(frameCallback)
+        animating = false
+    }
+
+    /**
+     * Replaces what is drawn with [path], for overlays that are not a single quad. The caller
+     * invalidates the view.
+     */
     fun setPath(path: Path) {
         this.path = path
+        quadBounds.set(0, 0, width, height)
+    }
+
+    /**
+     * Draws the quad [corners], `x0, y0, ..., x3, y3` in view coordinates in drawing order, or
+     * clears it when null. The corners are copied, so the array may be reused right away.
+     *
+     * Safe to call from any thread, but from one at a time; the quad is drawn on the next
+     * display frame, and of several quads set before it only the last one is.
+     */
+    fun setCorners(corners: FloatArray?) {
+        publish(corners, false, 0)
+    }
+
+    /**
+     * Hands the quad [corners] detected in a frame captured at [timeNanos], in view coordinates,
+     * or null when none was found, to [addDetection] on the UI thread. Like [setCorners], the
+     * corners are copied right away, and of several detections posted before the UI thread gets
+     * to them only the last one is used.
+     */
+    fun postDetection(corners: FloatArray?, timeNanos: Long) {
+        publish(corners, true, timeNanos)
+    }
+
+    private fun publish(corners: FloatArray?, detected: Boolean, timeNanos: Long) {
+        if (corners != null) {
+            System.arraycopy(corners, 0, cornerBuffers[writeBuffer], 0, 8)
+        }
+        cornersFound[writeBuffer] = corners != null
+        cornersDetected[writeBuffer] = detected
+        cornerTimes[writeBuffer] = timeNanos
+        writeBuffer = publishedBuffer.getAndSet(writeBuffer or PUBLISHED) and PUBLISHED.inv()
+        if (applyPosted.compareAndSet(false, true)) {
+            postOnAnimation(applyCorners)
+        }
+    }
+
+    /**
+     * Draws the overlay on a hardware layer, which the compositor can then move or fade without
+     * redrawing it. Every new quad redraws the layer, so this only pays off when the quad changes
+     * less often than the view is composited.
+     */
+    fun setHardwareLayer(enabled: Boolean) {
+        setLayerType(if (enabled) LAYER_TYPE_HARDWARE else LAYER_TYPE_NONE, null)
+    }
+
+    /**
+     * Draws the corners predicted by [filter] on every display frame instead of the quads given
+     * to [setCorners]; detections are fed in through [addDetection] or [postDetection]. Call on
+     * the UI thread.
+     */
+    fun setCornerFilter(filter: CornerKalmanFilter?) {
+        cornerFilter = filter
+    }
+
+    /**
+     * Corrects the corner filter with [corners] in view coordinates, or only keeps predicting
+     * when null, and starts drawing at display rate. Call on the UI thread.
+     */
+    fun addDetection(corners: FloatArray?, timeNanos: Long) {
+        val filter = cornerFilter ?: return
+        if (corners != null) {
+            filter.update(corners, timeNanos)
+        }
+        if (!animating && filter.isTracking) {
+            animating = true
+            Choreographer.getInstance().postFrameCallback(frameCallback)
+        }
+    }
+
+    private fun onVsync(frameTimeNanos: Long) {
+        val filter = cornerFilter
+        animating = filter != null && filter.predict(frameTimeNanos, corners)
+        if (animating) {
+            Choreographer.getInstance().postFrameCallback(frameCallback)
+        }
+        showQuad(corners, animating)
+    }
+
+    /**
+     * Rebuilds [quadPath] from [quad], or empties it, and invalidates the union of the old and
+     * new quad bounds. Call on the UI thread.
+     */
+    private fun showQuad(quad: FloatArray, found: Boolean) {
+        dirty.set(quadBounds)
+        path = quadPath
+        quadPath.rewind()
+        if (found) {
+            quadPath.moveTo(quad[0], quad[1])
+            for (i in 1 until 4) {
+                quadPath.lineTo(quad[2 * i], quad[2 * i + 1])
+            }
+            quadPath.close()
+            var left = quad[0]
+            var top = quad[1]
+            var right = left
+            var bottom = top
+            for (i in 1 until 4) {
+                left = minOf(left, quad[2 * i])
+                right = maxOf(right, quad[2 * i])
+                top = minOf(top, quad[2 * i + 1])
+                bottom = maxOf(bottom, quad[2 * i + 1])
+            }
+            // The stroke extends half its width beyond the outline, and joins a little further
+            val outset = ceil(paint.strokeWidth).toInt()
+            quadBounds.set(left.toInt() - outset, top.toInt() - outset,
+                    ceil(right).toInt() + outset, ceil(bottom).toInt() + outset)
+            dirty.union(quadBounds)
+        } else {
+            quadBounds.setEmpty()
+        }
+        if (!dirty.isEmpty) {
+            invalidate(dirty.left, dirty.top, dirty.right, dirty.bottom)
+        }
+    }
+
+    companion object {
+        private const val PUBLISHED = 4
     }
 }
@@ -0,0 +1,227 @@
+package io.github.iyotetsuya.rectangledetection.batch;
+
+import io.github.iyotetsuya.rectangledetection.detector.CornerKalmanFilter;
+import io.github.iyotetsuya.rectangledetection.detector.JavaQuadDetector;
+import io.github.iyotetsuya.rectangledetection.detector.RectangleDetector;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Measures how well and how fast the detector finds the quads of a {@link SyntheticCorpus}, at
+ * one or more working sizes, so a change can be judged on both at once.
+ *
+ * <p>A frame is a hit when a quad is found and each of its corners is within the tolerance of the
+ * true one, a miss when none is found, and wrong otherwise. Corner errors are the mean distance
+ * of the four corners on found frames, in frame pixels; times are those of
+ * {@link RectangleDetector#detect(byte[], int, int, float[])} alone. Every size runs on the same
+ * frames, after a warm-up on others.</p>
+ */
+public final class AccuracyBenchmark {
+    private static final String USAGE = "usage: benchmark [options]\n"
+            + "  --frames N       frames per size (default 200)\n"
+            + "  --warmup N       frames detected before measuring (default 50)\n"
+            + "  --seed N         corpus seed (default 1)\n"
+            + "  --width N        frame width (default 640)\n"
+            + "  --height N       frame height (default 480)\n"
+            + "  --sizes A,B,...  working sizes to compare (default 200,300,400)\n"
+            + "  --noise F        noise standard deviation in gray levels (default 6)\n"
+            + "  --blur N         box blur radius (default 1)\n"
+            + "  --clutter N      shapes per frame (default 20)\n"
+            + "  --tolerance F    largest corner error of a hit, in frame pixels (default 8)\n";
+
+    /**
+     * Accuracy and timing of one working size.
+     */
+    static final class Result {
+        final int size;
+        int frames;
+        int hits;
+        int misses;
+        final LatencyStats time = new LatencyStats("detect");
+        private double[] errors = new double[64];
+        private int errorCount;
+
+        Result(int size) {
+            this.size = size;
+        }
+
+        int getWrong() {
+            return frames - hits - misses;
+        }
+
+        double getHitRate() {
+            return frames == 0 ? 0 : (double) hits / frames;
+        }
+
+        /**
+         * Nearest-rank percentile of the corner error over found frames, or NaN if none was.
+         */
+        double errorPercentile(double percent) {
+            if (errorCount == 0) {
+                return Double.NaN;
+            }
+            double[] sorted = Arrays.copyOf(errors, errorCount);
+            Arrays.sort(sorted);
+            int rank = (int) Math.ceil(percent / 100 * errorCount);
+            return sorted[Math.max(0, Math.min(errorCount, rank) - 1)];
+        }
+
+        void addError(double error) {
+            if (errorCount == errors.length) {
+                errors = Arrays.copyOf(errors, 2 * errorCount);
+            }
+            errors[errorCount++] = error;
+        }
+    }
+
+    private AccuracyBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        Options options;
+        try {
+            options = Options.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.print(USAGE);
+            System.exit(2);
+            return;
+        }
+        List<Result> results = new ArrayList<>();
+        for (int size : options.sizes) {
+            results.add(run(options, size));
+        }
+        print(options, results, System.out);
+    }
+
+    static Result run(Options options, int size) {
+        RectangleDetector detector = new RectangleDetector(new JavaQuadDetector(), size, size);
+        float[] corners = new float[8];
+        SyntheticCorpus warmup = newCorpus(options, options.seed + 1);
+        for (int i = 0; i < options.warmup; i++) {
+            detector.detect(warmup.next().getNv21(), options.width, options.height, corners);
+        }
+        SyntheticCorpus corpus = newCorpus(options, options.seed);
+        Result result = new Result(size);
+        for (int i = 0; i < options.frames; i++) {
+            SyntheticCorpus.Sample sample = corpus.next();
+            long start = System.nanoTime();
+            boolean found = detector.detect(sample.getNv21(), options.width, options.height, corners);
+            result.time.add(System.nanoTime() - start);
+            result.frames++;
+            if (!found) {
+                result.misses++;
+                continue;
+            }
+            CornerKalmanFilter.orderCorners(corners);
+            float[] truth = sample.getCorners();
+            double sum = 0;
+            double max = 0;
+            for (int j = 0; j < 4; j++) {
+                double error = Math.hypot(corners[2 * j] - truth[2 * j], corners[2 * j + 1] - truth[2 * j + 1]);
+                sum += error;
+                max = Math.max(max, error);
+            }
+            result.addError(sum / 4);
+            if (max <= options.tolerance) {
+                result.hits++;
+            }
+        }
+        return result;
+    }
+
+    static void print(Options options, List<Result> results, PrintStream out) {
+        out.printf(Locale.ROOT, "%d frames of %dx%d, seed %d, noise %.1f, blur %d, clutter %d, tolerance %.1f px%n",
+                options.frames, options.width, options.height, options.seed, options.noise,
+                options.blur, options.clutter, options.tolerance);
+        out.printf(Locale.ROOT, "%6s %7s %7s %7s %9s %9s %8s %8s %8s %8s%n", "size", "hit %", "miss %",
+                "wrong %", "err p50", "err p95", "p50 ms", "p95 ms", "p99 ms", "fps");
+        for (Result result : results) {
+            long p50 = result.time.percentile(50);
+            out.printf(Locale.ROOT, "%6d %7.1f %7.1f %7.1f %9.2f %9.2f %8.2f %8.2f %8.2f %8.1f%n",
+                    result.size, 100.0 * result.hits / result.frames,
+                    100.0 * result.misses / result.frames, 100.0 * result.getWrong() / result.frames,
+                    result.errorPercentile(50), result.errorPercentile(95), p50 / 1e6,
+                    result.time.percentile(95) / 1e6, result.time.percentile(99) / 1e6,
+                    p50 > 0 ? 1e9 / p50 : 0);
+        }
+    }
+
+    private static SyntheticCorpus newCorpus(Options options, long seed) {
+        return new SyntheticCorpus(options.width, options.height, seed, options.noise, options.blur,
+                options.clutter);
+    }
+
+    static final class Options {
+        int frames = 200;
+        int warmup = 50;
+        long seed = 1;
+        int width = 640;
+        int height = 480;
+        int[] sizes = {200, 300, 400};
+        float noise = 6;
+        int blur = 1;
+        int clutter = 20;
+        float tolerance = 8;
+
+        /**
+         * @throws IllegalArgumentException if the arguments are not valid
+         */
+        static Options parse(String[] args) {
+            Options options = new Options();
+            for (int i = 0; i < args.length; i += 2) {
+                String option = args[i];
+                if (i + 1 == args.length) {
+                    throw new IllegalArgumentException("missing value for " + option);
+                }
+                String value = args[i + 1];
+                try {
+                    switch (option) {
+                        case "--frames":
+                            options.frames = Integer.parseInt(value);
+                            break;
+                        case "--warmup":
+                            options.warmup = Integer.parseInt(value);
+                            break;
+                        case "--seed":
+                            options.seed = Long.parseLong(value);
+                            break;
+                        case "--width":
+                            options.width = Integer.parseInt(value);
+                            break;
+                        case "--height":
+                            options.height = Integer.parseInt(value);
+                            break;
+                        case "--sizes":
+                            options.sizes = Arrays.stream(value.split(",")).mapToInt(Integer::parseInt).toArray();
+                            break;
+                        case "--noise":
+                            options.noise = Float.parseFloat(value);
+                            break;
+                        case "--blur":
+                            options.blur = Integer.parseInt(value);
+                            break;
+                        case "--clutter":
+                            options.clutter = Integer.parseInt(value);
+                            break;
+                        case "--tolerance":
+                            options.tolerance = Float.parseFloat(value);
+                            break;
+                        default:
+                            throw new IllegalArgumentException("unknown option: " + option);
+                    }
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException(option + " expects a number: " + value);
+                }
+            }
+            if (options.frames < 1 || options.width < 8 || options.height < 8) {
+                throw new IllegalArgumentException("frames, width and height must be positive");
+            }
+            return options;
+        }
+    }
+}
@@ -0,0 +1,415 @@
+package io.github.iyotetsuya.rectangledetection.batch;
+
+import io.github.iyotetsuya.rectangledetection.detector.JavaQuadDetector;
+import io.github.iyotetsuya.rectangledetection.detector.QuadDetector;
+import io.github.iyotetsuya.rectangledetection.detector.RectangleDetector;
+import io.github.iyotetsuya.rectangledetection.detector.ReplayFrameSource;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Detects the rectangle in every image of a set of directories or file lists, without a device.
+ *
+ * <p>Files are read and decoded on a pool of I/O threads and detected on a pool of worker
+ * threads, one {@link RectangleDetector} each. At most {@code --max-in-flight} images are decoded
+ * and not yet detected at any time, which bounds memory whatever the size of the archive. Results
+ * are streamed as CSV or JSON Lines in the order they complete; throughput and per-stage latency
+ * percentiles are printed to stderr at the end. The time an image spends waiting for a thread is
+ * reported as a stage of its own, and left out of its total.</p>
+ *
+ * <p>Still images are anything ImageIO reads, JPEG and PNG included. Files ending in
+ * {@code .nv21} are recordings written by
+ * {@link io.github.iyotetsuya.rectangledetection.detector.FrameRecorder}, and each of their
+ * frames is detected.</p>
+ */
+public final class BatchRunner {
+    private static final String USAGE = "usage: batch [options] <directory|file|@list-file>...\n"
+            + "  --format csv|jsonl   output format (default csv)\n"
+            + "  --output FILE        write results to FILE instead of stdout\n"
+            + "  --io-threads N       threads reading and decoding files (default 4)\n"
+            + "  --workers N          detection threads (default: number of processors)\n"
+            + "  --max-in-flight N    images decoded but not yet detected (default 2 x workers)\n"
+            + "  --size N             working image size (default 400)\n";
+    private static final int RECORDING_BUFFERS = 2;
+
+    private final Options options;
+    private final Supplier<QuadDetector> backends;
+    private final LatencyStats read = new LatencyStats("read");
+    private final LatencyStats decode = new LatencyStats("decode");
+    private final LatencyStats detect = new LatencyStats("detect");
+    private final LatencyStats queue = new LatencyStats("queue");
+    private final LatencyStats total = new LatencyStats("total");
+    private final AtomicLong images = new AtomicLong();
+    private final AtomicLong found = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private long elapsedNanos;
+
+    BatchRunner(Options options) {
+        this(options, JavaQuadDetector::new);
+    }
+
+    /**
+     * @param backends creates the detector backend of each worker thread
+     */
+    BatchRunner(Options options, Supplier<QuadDetector> backends) {
+        this.options = options;
+        this.backends = backends;
+    }
+
+    public static void main(String[] args) {
+        Options options;
+        List<File> files;
+        try {
+            options = Options.parse(args);
+            files = listFiles(options.inputs);
+        } catch (IllegalArgumentException | IOException e) {
+            System.err.println(e.getMessage());
+            System.err.print(USAGE);
+            System.exit(2);
+            return;
+        }
+        BatchRunner runner = new BatchRunner(options);
+        try (Writer out = options.output == null
+                ? new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8))
+                : new BufferedWriter(new OutputStreamWriter(new FileOutputStream(options.output),
+                StandardCharsets.UTF_8))) {
+            runner.run(files, out);
+        } catch (IOException e) {
+            System.err.println("failed to write results: " + e.getMessage());
+            System.exit(1);
+        } catch (InterruptedException e) {
+            System.exit(1);
+        }
+        runner.printSummary(System.err);
+        System.exit(runner.failed.get() > 0 ? 1 : 0);
+    }
+
+    /**
+     * Detects every file, writing one result line each to {@code out}, and returns once all of
+     * them are written.
+     */
+    void run(List<File> files, Writer out) throws IOException, InterruptedException {
+        ResultWriter writer = new ResultWriter(out, options.format);
+        ExecutorService io = Executors.newFixedThreadPool(options.ioThreads, named("decode"));
+        ExecutorService workers = Executors.newFixedThreadPool(options.workers, named("detect"));
+        ThreadLocal<RectangleDetector> detectors = new ThreadLocal<RectangleDetector>() {
+            @Override
+            protected RectangleDetector initialValue() {
+                return new RectangleDetector(backends.get(), options.size, options.size);
+            }
+        };
+        Semaphore inFlight = new Semaphore(options.maxInFlight);
+        AtomicInteger writeErrors = new AtomicInteger();
+        long start = System.nanoTime();
+        try {
+            for (File file : files) {
+                inFlight.acquire();
+                long queued = System.nanoTime();
+                io.execute(() -> {
+                    Job job = new Job(file.getPath(), queued, inFlight);
+                    if (file.getName().toLowerCase(Locale.ROOT).endsWith(".nv21")) {
+                        readRecording(file, job, workers, detectors, writer, writeErrors);
+                    } else {
+                        readImage(file, job, workers, detectors, writer, writeErrors);
+                    }
+                });
+            }
+        } finally {
+            io.shutdown();
+            io.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            workers.shutdown();
+            workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+        elapsedNanos = System.nanoTime() - start;
+        writer.flush();
+        if (writeErrors.get() > 0) {
+            throw new IOException(writeErrors.get() + " results could not be written");
+        }
+    }
+
+    private void readImage(File file, Job job, ExecutorService workers,
+                           ThreadLocal<RectangleDetector> detectors, ResultWriter writer,
+                           AtomicInteger writeErrors) {
+        byte[] luma;
+        int width;
+        int height;
+        long readStart = System.nanoTime();
+        long decodeEnd;
+        try {
+            byte[] encoded = Files.readAllBytes(file.toPath());
+            long decodeStart = System.nanoTime();
+            BufferedImage image = ImageDecoder.decode(encoded);
+            luma = ImageDecoder.toLuma(image);
+            width = image.getWidth();
+            height = image.getHeight();
+            decodeEnd = System.nanoTime();
+            read.add(decodeStart - readStart);
+            decode.add(decodeEnd - decodeStart);
+        } catch (IOException | RuntimeException e) {
+            failed.incrementAndGet();
+            write(writer, writeErrors, job.name, 0, false, null, 0, 0, e.toString());
+            job.inFlight.release();
+            return;
+        }
+        workers.execute(() -> {
+            try {
+                detect(detectors.get(), job, 0, luma, width, height, readStart - job.queuedNanos,
+                        decodeEnd - readStart, decodeEnd, writer, writeErrors);
+            } finally {
+                job.inFlight.release();
+            }
+        });
+    }
+
+    /**
+     * Detects every frame of a recording. Its frames share the recording's slot in flight, and
+     * the source's few buffers keep it from reading ahead of the workers.
+     */
+    private void readRecording(File file, Job job, ExecutorService workers,
+                               ThreadLocal<RectangleDetector> detectors, ResultWriter writer,
+                               AtomicInteger writeErrors) {
+        AtomicInteger frameIndex = new AtomicInteger();
+        try (ReplayFrameSource source = new ReplayFrameSource(file,
+                ReplayFrameSource.Pacing.AS_FAST_AS_POSSIBLE, RECORDING_BUFFERS)) {
+            source.start(frame -> {
+                int index = frameIndex.getAndIncrement();
+                long delivered = System.nanoTime();
+                workers.execute(() -> {
+                    try {
+                        detect(detectors.get(), job, index, frame.getData(), frame.getWidth(),
+                                frame.getHeight(), 0, 0, delivered, writer, writeErrors);
+                    } finally {
+                        frame.release();
+                    }
+                });
+            });
+            source.awaitEnd();
+        } catch (IOException e) {
+            failed.incrementAndGet();
+            write(writer, writeErrors, job.name, 0, false, null, 0, 0, e.toString());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            job.inFlight.release();
+        }
+    }
+
+    /**
+     * Detects one image and records its result and latency: {@code waitedNanos} and
+     * {@code workedNanos} are what it spent waiting for and being read and decoded by an I/O
+     * thread, and {@code handedOverNanos} is when it was handed to the workers. A detection that
+     * fails is recorded as a failure of this image alone.
+     */
+    private void detect(RectangleDetector detector, Job job, int frame, byte[] luma, int width,
+                        int height, long waitedNanos, long workedNanos, long handedOverNanos,
+                        ResultWriter writer, AtomicInteger writeErrors) {
+        float[] corners = new float[8];
+        long detectStart = System.nanoTime();
+        boolean quad;
+        try {
+            quad = detector.detect(luma, width, height, corners);
+        } catch (RuntimeException e) {
+            failed.incrementAndGet();
+            write(writer, writeErrors, job.name, frame, false, null, width, height, e.toString());
+            return;
+        }
+        long detectEnd = System.nanoTime();
+        detect.add(detectEnd - detectStart);
+        images.incrementAndGet();
+        if (quad) {
+            found.incrementAndGet();
+        }
+        write(writer, writeErrors, job.name, frame, quad, corners, width, height, null);
+        queue.add(waitedNanos + detectStart - handedOverNanos);
+        total.add(workedNanos + System.nanoTime() - detectStart);
+    }
+
+    private static void write(ResultWriter writer, AtomicInteger writeErrors, String file,
+                              int frame, boolean found, float[] corners, int width, int height,
+                              String error) {
+        try {
+            writer.write(file, frame, found, corners, width, height, error);
+        } catch (IOException e) {
+            writeErrors.incrementAndGet();
+        }
+    }
+
+    void printSummary(PrintStream out) {
+        double seconds = elapsedNanos / 1e9;
+        out.printf(Locale.ROOT, "%d images, %d with a quad, %d failed in %.2f s: %.1f images/s%n",
+                images.get(), found.get(), failed.get(), seconds,
+                seconds > 0 ? images.get() / seconds : 0);
+        out.printf(Locale.ROOT, "%-8s %8s %10s %10s %10s%n", "stage", "count", "p50 ms", "p95 ms", "p99 ms");
+        for (LatencyStats stats : new LatencyStats[]{queue, read, decode, detect, total}) {
+            out.printf(Locale.ROOT, "%-8s %8d %10.2f %10.2f %10.2f%n", stats.getName(), stats.getCount(),
+                    stats.percentile(50) / 1e6, stats.percentile(95) / 1e6, stats.percentile(99) / 1e6);
+        }
+    }
+
+    long getImageCount() {
+        return images.get();
+    }
+
+    LatencyStats getDetectStats() {
+        return detect;
+    }
+
+    /**
+     * Expands directories, recursively, and {@code @list} files, one path per line, into the
+     * files to detect, in a stable order.
+     */
+    static List<File> listFiles(List<String> inputs) throws IOException {
+        List<File> files = new ArrayList<>();
+        for (String input : inputs) {
+            if (input.startsWith("@")) {
+                for (String line : Files.readAllLines(new File(input.substring(1)).toPath(),
+                        StandardCharsets.UTF_8)) {
+                    if (!line.trim().isEmpty()) {
+                        files.add(new File(line.trim()));
+                    }
+                }
+            } else if (new File(input).isDirectory()) {
+                List<File> found;
+                try (Stream<Path> paths = Files.walk(new File(input).toPath())) {
+                    found = paths.filter(Files::isRegularFile)
+                            .map(Path::toFile)
+                            .filter(BatchRunner::isSupported)
+                            .collect(Collectors.toList());
+                }
+                Collections.sort(found);
+                files.addAll(found);
+            } else {
+                files.add(new File(input));
+            }
+        }
+        return files;
+    }
+
+    private static boolean isSupported(File file) {
+        String name = file.getName().toLowerCase(Locale.ROOT);
+        return name.endsWith(".jpg") || name.endsWith(".jpeg") || name.endsWith(".png")
+                || name.endsWith(".nv21");
+    }
+
+    private static ThreadFactory named(String prefix) {
+        AtomicInteger threadCount = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + threadCount.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * One input file on its way through the stages.
+     */
+    private static final class Job {
+        final String name;
+        final long queuedNanos;
+        final Semaphore inFlight;
+
+        Job(String name, long queuedNanos, Semaphore inFlight) {
+            this.name = name;
+            this.queuedNanos = queuedNanos;
+            this.inFlight = inFlight;
+        }
+    }
+
+    static final class Options {
+        ResultWriter.Format format = ResultWriter.Format.CSV;
+        File output;
+        int ioThreads = 4;
+        int workers = Runtime.getRuntime().availableProcessors();
+        int maxInFlight;
+        int size = 400;
+        final List<String> inputs = new ArrayList<>();
+
+        /**
+         * @throws IllegalArgumentException if the arguments are not valid
+         */
+        static Options parse(String[] args) {
+            Options options = new Options();
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if (!arg.startsWith("--")) {
+                    options.inputs.add(arg);
+                    continue;
+                }
+                if (i + 1 == args.length) {
+                    throw new IllegalArgumentException("missing value for " + arg);
+                }
+                String value = args[++i];
+                switch (arg) {
+                    case "--format":
+                        try {
+                            options.format = ResultWriter.Format.valueOf(value.toUpperCase(Locale.ROOT));
+                        } catch (IllegalArgumentException e) {
+                            throw new IllegalArgumentException("unknown format: " + value);
+                        }
+                        break;
+                    case "--output":
+                        options.output = new File(value);
+                        break;
+                    case "--io-threads":
+                        options.ioThreads = positive(arg, value);
+                        break;
+                    case "--workers":
+                        options.workers = positive(arg, value);
+                        break;
+                    case "--max-in-flight":
+                        options.maxInFlight = positive(arg, value);
+                        break;
+                    case "--size":
+                        options.size = positive(arg, value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("unknown option: " + arg);
+                }
+            }
+            if (options.inputs.isEmpty()) {
+                throw new IllegalArgumentException("no input given");
+            }
+            if (options.maxInFlight == 0) {
+                options.maxInFlight = 2 * options.workers;
+            }
+            return options;
+        }
+
+        private static int positive(String option, String value) {
+            int number;
+            try {
+                number = Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(option + " expects a number: " + value);
+            }
+            if (number < 1) {
+                throw new IllegalArgumentException(option + " must be positive: " + value);
+            }
+            return number;
+        }
+    }
+}
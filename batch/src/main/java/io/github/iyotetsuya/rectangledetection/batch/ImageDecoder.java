@@ -0,0 +1,59 @@
+package io.github.iyotetsuya.rectangledetection.batch;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.Raster;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Decodes still images into the 8-bit luma planes the detector works on.
+ */
+final class ImageDecoder {
+
+    private ImageDecoder() {
+    }
+
+    /**
+     * Decodes a JPEG, PNG or any other image ImageIO can read.
+     *
+     * @throws IOException if the data is not a readable image
+     */
+    static BufferedImage decode(byte[] encoded) throws IOException {
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(encoded));
+        if (image == null) {
+            throw new IOException("unsupported image format");
+        }
+        return image;
+    }
+
+    /**
+     * Returns the BT.601 luma of {@code image}, row by row without padding, as the Y plane of an
+     * NV21 frame would hold it.
+     */
+    static byte[] toLuma(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        byte[] luma = new byte[width * height];
+        Raster raster = image.getRaster();
+        if (image.getType() == BufferedImage.TYPE_BYTE_GRAY
+                && raster.getDataBuffer() instanceof DataBufferByte) {
+            raster.getDataElements(0, 0, width, height, luma);
+            return luma;
+        }
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            for (int x = 0; x < width; x++) {
+                int rgb = row[x];
+                int r = (rgb >> 16) & 0xff;
+                int g = (rgb >> 8) & 0xff;
+                int b = rgb & 0xff;
+                luma[y * width + x] = (byte) ((77 * r + 150 * g + 29 * b + 128) >> 8);
+            }
+        }
+        return luma;
+    }
+}
@@ -0,0 +1,44 @@
+package io.github.iyotetsuya.rectangledetection.batch;
+
+import java.util.Arrays;
+
+/**
+ * Latency samples of one stage, summarized as percentiles. Thread-safe.
+ */
+final class LatencyStats {
+    private final String name;
+    private long[] samples = new long[1024];
+    private int count;
+
+    LatencyStats(String name) {
+        this.name = name;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    synchronized void add(long nanos) {
+        if (count == samples.length) {
+            samples = Arrays.copyOf(samples, 2 * count);
+        }
+        samples[count++] = nanos;
+    }
+
+    synchronized int getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the nearest-rank {@code percent} percentile, or 0 without samples.
+     */
+    synchronized long percentile(double percent) {
+        if (count == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(percent / 100 * count);
+        return sorted[Math.max(0, Math.min(count, rank) - 1)];
+    }
+}
@@ -0,0 +1,95 @@
+package io.github.iyotetsuya.rectangledetection.batch;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Streams one line per detected image, as CSV with a header line or as JSON Lines. Thread-safe;
+ * lines are written in the order results come in.
+ */
+final class ResultWriter {
+
+    enum Format {
+        CSV,
+        JSONL
+    }
+
+    private final Writer out;
+    private final Format format;
+    private final StringBuilder line = new StringBuilder(256);
+
+    ResultWriter(Writer out, Format format) throws IOException {
+        this.out = out;
+        this.format = format;
+        if (format == Format.CSV) {
+            out.write("file,frame,found,x0,y0,x1,y1,x2,y2,x3,y3,width,height,error\n");
+        }
+    }
+
+    /**
+     * @param frame   index of the frame within a recording, 0 for still images
+     * @param corners the corners if {@code found}
+     * @param error   why the image could not be read, or null
+     */
+    synchronized void write(String file, int frame, boolean found, float[] corners, int width,
+                            int height, String error) throws IOException {
+        line.setLength(0);
+        if (format == Format.CSV) {
+            appendCsv(file).append(',').append(frame).append(',').append(found);
+            for (int i = 0; i < 8; i++) {
+                line.append(',');
+                if (found) {
+                    line.append(corners[i]);
+                }
+            }
+            line.append(',').append(width).append(',').append(height).append(',');
+            if (error != null) {
+                appendCsv(error);
+            }
+        } else {
+            line.append("{\"file\":");
+            appendJson(file).append(",\"frame\":").append(frame).append(",\"found\":").append(found);
+            if (found) {
+                line.append(",\"corners\":[");
+                for (int i = 0; i < 8; i++) {
+                    line.append(i == 0 ? "" : ",").append(corners[i]);
+                }
+                line.append(']');
+            }
+            line.append(",\"width\":").append(width).append(",\"height\":").append(height);
+            if (error != null) {
+                line.append(",\"error\":");
+                appendJson(error);
+            }
+            line.append('}');
+        }
+        line.append('\n');
+        out.append(line);
+    }
+
+    synchronized void flush() throws IOException {
+        out.flush();
+    }
+
+    private StringBuilder appendCsv(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            return line.append(value);
+        }
+        return line.append('"').append(value.replace("\"", "\"\"")).append('"');
+    }
+
+    private StringBuilder appendJson(String value) {
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                line.append('\\').append(c);
+            } else if (c < 0x20) {
+                line.append(String.format("\\u%04x", (int) c));
+            } else {
+                line.append(c);
+            }
+        }
+        return line.append('"');
+    }
+}
@@ -0,0 +1,266 @@
+package io.github.iyotetsuya.rectangledetection.batch;
+
+import io.github.iyotetsuya.rectangledetection.detector.CornerKalmanFilter;
+
+import java.util.Random;
+
+/**
+ * Renders NV21 frames of a bright, perspective-warped quad on a cluttered background, with blur
+ * and sensor noise, together with the true corners. The same seed always gives the same frames,
+ * so detector changes can be compared on identical input.
+ *
+ * <p>Quad edges are anti-aliased by supersampling, so the true corners are exact to a fraction of
+ * a pixel. Quads stay within the angles the detector accepts as rectangular, so every frame has
+ * one quad to find.</p>
+ */
+public final class SyntheticCorpus {
+    private static final int SUPERSAMPLING = 4;
+    // Largest corner offset for the perspective, relative to the quad size
+    private static final float MAX_SKEW = 0.06f;
+
+    private final int width;
+    private final int height;
+    private final float noise;
+    private final int blurRadius;
+    private final int clutter;
+    private final Random random;
+    private final float[] canvas;
+    private final float[] blurred;
+
+    /**
+     * One frame and the corners of its quad.
+     */
+    public static final class Sample {
+        private final byte[] nv21;
+        private final float[] corners;
+
+        Sample(byte[] nv21, float[] corners) {
+            this.nv21 = nv21;
+            this.corners = corners;
+        }
+
+        public byte[] getNv21() {
+            return nv21;
+        }
+
+        /**
+         * The true corners as {@code x0, y0, ..., x3, y3}, in the order of
+         * {@link CornerKalmanFilter#orderCorners(float[])}.
+         */
+        public float[] getCorners() {
+            return corners;
+        }
+    }
+
+    /**
+     * @param noise      standard deviation of the Gaussian noise, in gray levels
+     * @param blurRadius radius of the box blur, 0 for none
+     * @param clutter    number of small shapes drawn on the background and the quad
+     */
+    public SyntheticCorpus(int width, int height, long seed, float noise, int blurRadius, int clutter) {
+        this.width = width;
+        this.height = height;
+        this.noise = noise;
+        this.blurRadius = blurRadius;
+        this.clutter = clutter;
+        this.random = new Random(seed);
+        this.canvas = new float[width * height];
+        this.blurred = new float[width * height];
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public Sample next() {
+        float[] corners = randomQuad();
+        float[] luma = canvas;
+        int background = 30 + random.nextInt(60);
+        int paper = background + 90 + random.nextInt(255 - background - 90);
+        // Background with a lighting gradient
+        float gradientX = (random.nextFloat() - 0.5f) * 40 / width;
+        float gradientY = (random.nextFloat() - 0.5f) * 40 / height;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                luma[y * width + x] = background + gradientX * x + gradientY * y;
+            }
+        }
+        for (int i = 0; i < clutter / 2; i++) {
+            drawBlob(luma, random.nextFloat() * width, random.nextFloat() * height, background);
+        }
+        fillQuad(luma, corners, paper);
+        // Print on the page, and more clutter on top of everything
+        for (int i = 0; i < clutter - clutter / 2; i++) {
+            drawLine(luma, corners, paper);
+        }
+        blur(luma);
+        byte[] nv21 = new byte[width * height * 3 / 2];
+        for (int i = 0; i < width * height; i++) {
+            float value = blurred[i] + (float) random.nextGaussian() * noise;
+            nv21[i] = (byte) Math.max(0, Math.min(255, Math.round(value)));
+        }
+        // Gray chroma
+        for (int i = width * height; i < nv21.length; i++) {
+            nv21[i] = (byte) 128;
+        }
+        return new Sample(nv21, corners);
+    }
+
+    /**
+     * A rotated rectangle of random size and aspect with every corner moved a little, as a
+     * photographed page would be.
+     */
+    private float[] randomQuad() {
+        float size = Math.min(width, height) * (0.35f + 0.4f * random.nextFloat());
+        float aspect = 0.6f + 0.8f * random.nextFloat();
+        float halfWidth = size * (float) Math.sqrt(aspect) / 2;
+        float halfHeight = size / (float) Math.sqrt(aspect) / 2;
+        double angle = (random.nextDouble() - 0.5) * Math.PI / 3;
+        float cos = (float) Math.cos(angle);
+        float sin = (float) Math.sin(angle);
+        float[] corners = new float[8];
+        float[] unitX = {-1, 1, 1, -1};
+        float[] unitY = {-1, -1, 1, 1};
+        float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE, maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+        for (int i = 0; i < 4; i++) {
+            float x = unitX[i] * halfWidth + (random.nextFloat() * 2 - 1) * MAX_SKEW * size;
+            float y = unitY[i] * halfHeight + (random.nextFloat() * 2 - 1) * MAX_SKEW * size;
+            corners[2 * i] = x * cos - y * sin;
+            corners[2 * i + 1] = x * sin + y * cos;
+            minX = Math.min(minX, corners[2 * i]);
+            maxX = Math.max(maxX, corners[2 * i]);
+            minY = Math.min(minY, corners[2 * i + 1]);
+            maxY = Math.max(maxY, corners[2 * i + 1]);
+        }
+        // Anywhere it fits, away from the border
+        float margin = 0.04f * Math.min(width, height);
+        float centerX = margin - minX + random.nextFloat() * Math.max(0, width - 2 * margin - (maxX - minX));
+        float centerY = margin - minY + random.nextFloat() * Math.max(0, height - 2 * margin - (maxY - minY));
+        for (int i = 0; i < 4; i++) {
+            corners[2 * i] += centerX;
+            corners[2 * i + 1] += centerY;
+        }
+        CornerKalmanFilter.orderCorners(corners);
+        return corners;
+    }
+
+    private void fillQuad(float[] luma, float[] quad, int value) {
+        int minX = width, minY = height, maxX = 0, maxY = 0;
+        for (int i = 0; i < 4; i++) {
+            minX = Math.min(minX, (int) Math.floor(quad[2 * i]));
+            maxX = Math.max(maxX, (int) Math.ceil(quad[2 * i]));
+            minY = Math.min(minY, (int) Math.floor(quad[2 * i + 1]));
+            maxY = Math.max(maxY, (int) Math.ceil(quad[2 * i + 1]));
+        }
+        float step = 1f / SUPERSAMPLING;
+        for (int y = Math.max(0, minY); y <= Math.min(height - 1, maxY); y++) {
+            for (int x = Math.max(0, minX); x <= Math.min(width - 1, maxX); x++) {
+                // Pixel (x, y) covers [x - 0.5, x + 0.5), so corners are in pixel-centre coordinates
+                int inside = 0;
+                for (int sy = 0; sy < SUPERSAMPLING; sy++) {
+                    for (int sx = 0; sx < SUPERSAMPLING; sx++) {
+                        if (contains(quad, x - 0.5f + (sx + 0.5f) * step, y - 0.5f + (sy + 0.5f) * step)) {
+                            inside++;
+                        }
+                    }
+                }
+                if (inside > 0) {
+                    float cover = (float) inside / (SUPERSAMPLING * SUPERSAMPLING);
+                    int i = y * width + x;
+                    luma[i] += (value - luma[i]) * cover;
+                }
+            }
+        }
+    }
+
+    private void drawBlob(float[] luma, float centerX, float centerY, int background) {
+        float radius = 2 + random.nextFloat() * 0.02f * Math.min(width, height);
+        float value = background + (random.nextFloat() - 0.5f) * 80;
+        for (int y = Math.max(0, (int) (centerY - radius)); y <= Math.min(height - 1, (int) (centerY + radius)); y++) {
+            for (int x = Math.max(0, (int) (centerX - radius)); x <= Math.min(width - 1, (int) (centerX + radius)); x++) {
+                float dx = x - centerX;
+                float dy = y - centerY;
+                if (dx * dx + dy * dy <= radius * radius) {
+                    luma[y * width + x] = value;
+                }
+            }
+        }
+    }
+
+    /**
+     * A short dark stroke inside the quad, like a line of print.
+     */
+    private void drawLine(float[] luma, float[] quad, int paper) {
+        // A point inside the quad, as a random convex combination of its corners
+        float[] weights = new float[4];
+        float sum = 0;
+        for (int i = 0; i < 4; i++) {
+            weights[i] = 0.2f + random.nextFloat();
+            sum += weights[i];
+        }
+        float x0 = 0, y0 = 0;
+        for (int i = 0; i < 4; i++) {
+            x0 += quad[2 * i] * weights[i] / sum;
+            y0 += quad[2 * i + 1] * weights[i] / sum;
+        }
+        float length = (0.05f + 0.1f * random.nextFloat()) * Math.min(width, height);
+        float dx = quad[2] - quad[0];
+        float dy = quad[3] - quad[1];
+        float norm = (float) Math.sqrt(dx * dx + dy * dy);
+        float value = paper - 60 - random.nextInt(60);
+        int steps = (int) length;
+        for (int k = 0; k < steps; k++) {
+            int x = Math.round(x0 + dx / norm * k);
+            int y = Math.round(y0 + dy / norm * k);
+            if (x >= 0 && x < width && y >= 0 && y < height && contains(quad, x, y)) {
+                luma[y * width + x] = value;
+            }
+        }
+    }
+
+    /**
+     * Box-blurs {@code luma} into {@link #blurred}, horizontally then vertically.
+     */
+    private void blur(float[] luma) {
+        if (blurRadius == 0) {
+            System.arraycopy(luma, 0, blurred, 0, luma.length);
+            return;
+        }
+        float scale = 1f / (2 * blurRadius + 1);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                float sum = 0;
+                for (int k = -blurRadius; k <= blurRadius; k++) {
+                    sum += luma[y * width + Math.max(0, Math.min(width - 1, x + k))];
+                }
+                blurred[y * width + x] = sum * scale;
+            }
+        }
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                float sum = 0;
+                for (int k = -blurRadius; k <= blurRadius; k++) {
+                    sum += blurred[Math.max(0, Math.min(height - 1, y + k)) * width + x];
+                }
+                luma[y * width + x] = sum * scale;
+            }
+        }
+        System.arraycopy(luma, 0, blurred, 0, luma.length);
+    }
+
+    private static boolean contains(float[] quad, float x, float y) {
+        boolean inside = false;
+        for (int i = 0, j = 3; i < 4; j = i++) {
+            float xi = quad[2 * i], yi = quad[2 * i + 1];
+            float xj = quad[2 * j], yj = quad[2 * j + 1];
+            if ((yi > y) != (yj > y) && x < (xj - xi) * (y - yi) / (yj - yi) + xi) {
+                inside = !inside;
+            }
+        }
+        return inside;
+    }
+}
@@ -0,0 +1,27 @@
+package io.github.iyotetsuya.rectangledetection.batch;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class AccuracyBenchmarkTest {
+
+    @Test
+    public void run_findsMostQuadsAccurately() {
+        AccuracyBenchmark.Options options = AccuracyBenchmark.Options.parse(new String[]{
+                "--frames", "40", "--warmup", "0", "--width", "320", "--height", "240"});
+
+        AccuracyBenchmark.Result result = AccuracyBenchmark.run(options, 200);
+
+        assertEquals(40, result.frames);
+        assertEquals(40, result.time.getCount());
+        // 92.5% and 1.1 px when this was written; a drop below is a regression in the detector
+        assertTrue("hit rate " + result.getHitRate(), result.getHitRate() >= 0.75);
+        assertTrue("corner error " + result.errorPercentile(50), result.errorPercentile(50) < 2.5);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parse_rejectsUnknownOptions() {
+        AccuracyBenchmark.Options.parse(new String[]{"--fast", "1"});
+    }
+}
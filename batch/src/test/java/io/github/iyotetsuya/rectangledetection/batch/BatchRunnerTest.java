@@ -0,0 +1,145 @@
+package io.github.iyotetsuya.rectangledetection.batch;
+
+import io.github.iyotetsuya.rectangledetection.detector.FrameRecorder;
+import io.github.iyotetsuya.rectangledetection.detector.JavaQuadDetector;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Polygon;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.ImageIO;
+
+import static org.junit.Assert.*;
+
+public class BatchRunnerTest {
+    private static final int WIDTH = 400;
+    private static final int HEIGHT = 300;
+    private static final int[] QUAD_X = {80, 320, 340, 70};
+    private static final int[] QUAD_Y = {60, 50, 240, 250};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void run_writesOneLinePerImage() throws Exception {
+        File directory = folder.newFolder();
+        writeImage(new File(directory, "a.png"), "png");
+        writeImage(new File(directory, "b.jpg"), "jpg");
+        try (FileOutputStream out = new FileOutputStream(new File(directory, "broken.png"))) {
+            out.write(new byte[]{1, 2, 3});
+        }
+        // Not an image extension, so not listed
+        new File(directory, "notes.txt").createNewFile();
+        List<File> files = BatchRunner.listFiles(Collections.singletonList(directory.getPath()));
+        StringWriter out = new StringWriter();
+
+        BatchRunner runner = new BatchRunner(BatchRunner.Options.parse(
+                new String[]{"--format", "jsonl", "--workers", "2", "--max-in-flight", "1", directory.getPath()}));
+        runner.run(files, out);
+
+        assertEquals(3, files.size());
+        String[] lines = out.toString().split("\n");
+        assertEquals(3, lines.length);
+        assertEquals(2, runner.getImageCount());
+        assertEquals(2, runner.getDetectStats().getCount());
+        for (String line : lines) {
+            if (line.contains("broken.png")) {
+                assertTrue(line, line.contains("\"found\":false") && line.contains("\"error\":"));
+            } else {
+                assertTrue(line, line.contains("\"found\":true") && line.contains("\"corners\":["));
+            }
+        }
+    }
+
+    @Test
+    public void run_recordsAFailedDetectionAndGoesOn() throws Exception {
+        File directory = folder.newFolder();
+        writeImage(new File(directory, "a.png"), "png");
+        writeImage(new File(directory, "b.png"), "png");
+        List<File> files = BatchRunner.listFiles(Collections.singletonList(directory.getPath()));
+        StringWriter out = new StringWriter();
+        JavaQuadDetector backend = new JavaQuadDetector();
+        AtomicInteger detections = new AtomicInteger();
+
+        BatchRunner runner = new BatchRunner(BatchRunner.Options.parse(
+                new String[]{"--format", "jsonl", "--workers", "1", directory.getPath()}),
+                () -> (gray, width, height, corners) -> {
+                    if (detections.getAndIncrement() == 0) {
+                        throw new IllegalStateException("odd image");
+                    }
+                    return backend.detect(gray, width, height, corners);
+                });
+        runner.run(files, out);
+
+        String[] lines = out.toString().split("\n");
+        assertEquals(2, lines.length);
+        assertEquals(1, runner.getImageCount());
+        assertTrue(out.toString(), out.toString().contains("odd image"));
+    }
+
+    @Test
+    public void run_detectsEveryFrameOfARecording() throws Exception {
+        File file = folder.newFile("frames.nv21");
+        byte[] frame = new byte[WIDTH * HEIGHT * 3 / 2];
+        BufferedImage image = render();
+        image.getRaster().getDataElements(0, 0, WIDTH, HEIGHT, frame);
+        try (FrameRecorder recorder = new FrameRecorder(file, WIDTH, HEIGHT)) {
+            for (int i = 0; i < 3; i++) {
+                recorder.write(frame, i * 33000000L);
+            }
+        }
+        StringWriter out = new StringWriter();
+
+        BatchRunner runner = new BatchRunner(BatchRunner.Options.parse(new String[]{file.getPath()}));
+        runner.run(Collections.singletonList(file), out);
+
+        String[] lines = out.toString().split("\n");
+        assertEquals("file,frame,found,x0,y0,x1,y1,x2,y2,x3,y3,width,height,error", lines[0]);
+        assertEquals(4, lines.length);
+        int[] frames = new int[3];
+        for (int i = 1; i < lines.length; i++) {
+            String[] fields = lines[i].split(",", -1);
+            assertEquals(file.getPath(), fields[0]);
+            assertEquals("true", fields[2]);
+            frames[i - 1] = Integer.parseInt(fields[1]);
+        }
+        Arrays.sort(frames);
+        assertArrayEquals(new int[]{0, 1, 2}, frames);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parse_rejectsUnknownOptions() {
+        BatchRunner.Options.parse(new String[]{"--fast", "1", "images"});
+    }
+
+    private static void writeImage(File file, String format) throws Exception {
+        BufferedImage gray = render();
+        // JPEG and PNG writers both take RGB
+        BufferedImage rgb = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        rgb.getGraphics().drawImage(gray, 0, 0, null);
+        assertTrue(ImageIO.write(rgb, format, file));
+    }
+
+    private static BufferedImage render() {
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(new Color(40, 40, 40));
+        graphics.fillRect(0, 0, WIDTH, HEIGHT);
+        graphics.setColor(new Color(200, 200, 200));
+        graphics.fillPolygon(new Polygon(QUAD_X, QUAD_Y, 4));
+        graphics.dispose();
+        return image;
+    }
+}
@@ -0,0 +1,29 @@
+package io.github.iyotetsuya.rectangledetection.batch;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LatencyStatsTest {
+
+    @Test
+    public void percentile_usesNearestRank() {
+        LatencyStats stats = new LatencyStats("detect");
+        // Added out of order on purpose
+        for (int i = 100; i >= 1; i--) {
+            stats.add(i);
+        }
+
+        assertEquals(100, stats.getCount());
+        assertEquals(50, stats.percentile(50));
+        assertEquals(95, stats.percentile(95));
+        assertEquals(99, stats.percentile(99));
+        assertEquals(100, stats.percentile(100));
+        assertEquals(1, stats.percentile(0));
+    }
+
+    @Test
+    public void percentile_isZeroWithoutSamples() {
+        assertEquals(0, new LatencyStats("read").percentile(50));
+    }
+}
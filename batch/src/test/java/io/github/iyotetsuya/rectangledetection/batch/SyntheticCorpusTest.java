@@ -0,0 +1,34 @@
+package io.github.iyotetsuya.rectangledetection.batch;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SyntheticCorpusTest {
+
+    @Test
+    public void next_isDeterministicForASeed() {
+        SyntheticCorpus first = new SyntheticCorpus(160, 120, 7, 4, 1, 10);
+        SyntheticCorpus second = new SyntheticCorpus(160, 120, 7, 4, 1, 10);
+        for (int i = 0; i < 3; i++) {
+            SyntheticCorpus.Sample a = first.next();
+            SyntheticCorpus.Sample b = second.next();
+            assertArrayEquals(a.getNv21(), b.getNv21());
+            assertArrayEquals(a.getCorners(), b.getCorners(), 0f);
+        }
+    }
+
+    @Test
+    public void next_keepsTheQuadInsideTheFrame() {
+        SyntheticCorpus corpus = new SyntheticCorpus(160, 120, 3, 4, 1, 10);
+        for (int i = 0; i < 20; i++) {
+            SyntheticCorpus.Sample sample = corpus.next();
+            assertEquals(160 * 120 * 3 / 2, sample.getNv21().length);
+            float[] corners = sample.getCorners();
+            for (int j = 0; j < 4; j++) {
+                assertTrue(corners[2 * j] >= 0 && corners[2 * j] < 160);
+                assertTrue(corners[2 * j + 1] >= 0 && corners[2 * j + 1] < 120);
+            }
+        }
+    }
+}
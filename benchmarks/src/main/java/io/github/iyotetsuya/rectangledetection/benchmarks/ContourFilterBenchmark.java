@@ -0,0 +1,73 @@
+package io.github.iyotetsuya.rectangledetection.benchmarks;
+
+import io.github.iyotetsuya.rectangledetection.detector.ContourKernel;
+import io.github.iyotetsuya.rectangledetection.detector.CornerKalmanFilter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Contour filtering per frame: the original boxed path of {@code getContoursMat} and
+ * {@code getPath} against {@link ContourKernel} and {@link CornerKalmanFilter#orderCorners}.
+ * Both include copying the contours out of the tracer's buffer, as both do from
+ * {@code findContours}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContourFilterBenchmark {
+
+    // From a handful on a bare desk to a page of print seen up close
+    @Param({"16", "64", "256"})
+    public int contours;
+
+    // Working sizes of the app: COARSE_SIZE and SIZE
+    @Param({"200", "400"})
+    public int size;
+
+    private Contours input;
+    private final LegacyContourFilter legacy = new LegacyContourFilter();
+    private final ContourKernel kernel = new ContourKernel(8);
+    private final float[] corners = new float[8];
+
+    @Setup
+    public void setUp() {
+        input = Contours.trace(contours, size, 1);
+    }
+
+    @Benchmark
+    public List<LegacyContourFilter.Point> legacy() {
+        List<LegacyContourFilter.Point> quad = legacy.find(input);
+        return quad.size() == 4 ? LegacyContourFilter.sortForPath(quad) : quad;
+    }
+
+    @Benchmark
+    public float[] kernel() {
+        kernel.begin(input.width, input.height);
+        for (int i = 0; i < input.count; i++) {
+            int count = input.lengths[i];
+            int[] points = kernel.pointBuffer(count);
+            System.arraycopy(input.points, 2 * input.starts[i], points, 0, 2 * count);
+            kernel.offer(points, 0, count);
+        }
+        if (kernel.findQuad(corners) >= 0) {
+            CornerKalmanFilter.orderCorners(corners);
+        }
+        return corners;
+    }
+}
@@ -0,0 +1,103 @@
+package io.github.iyotetsuya.rectangledetection.benchmarks;
+
+import io.github.iyotetsuya.rectangledetection.batch.SyntheticCorpus;
+import io.github.iyotetsuya.rectangledetection.detector.ContourTracer;
+import io.github.iyotetsuya.rectangledetection.detector.EdgeFilter;
+import io.github.iyotetsuya.rectangledetection.detector.GrayImage;
+import io.github.iyotetsuya.rectangledetection.detector.LumaDecimator;
+import io.github.iyotetsuya.rectangledetection.detector.PolygonApprox;
+
+import java.util.Arrays;
+
+/**
+ * A fixed set of real contours, as the tracer finds them on decimated {@link SyntheticCorpus}
+ * frames, stored back to back like {@link ContourTracer#getPoints()}.
+ */
+final class Contours {
+    final int width;
+    final int height;
+    final int count;
+    final int[] points;
+    final int[] starts;
+    final int[] lengths;
+
+    private Contours(int width, int height, int count, int[] points, int[] starts, int[] lengths) {
+        this.width = width;
+        this.height = height;
+        this.count = count;
+        this.points = points;
+        this.starts = starts;
+        this.lengths = lengths;
+    }
+
+    /**
+     * Traces cluttered frames of a 4:3 corpus decimated to {@code size} until {@code count}
+     * contours are collected: the outline of one document, last, as the worst case for a filter
+     * that stops at the first quad, and the clutter of as many frames as it takes before it.
+     */
+    static Contours trace(int count, int size, long seed) {
+        SyntheticCorpus corpus = new SyntheticCorpus(640, 480, seed, 12, 1, 200);
+        GrayImage gray = new GrayImage();
+        ContourTracer tracer = new ContourTracer();
+        int[] points = new int[1024];
+        int[] starts = new int[count];
+        int[] lengths = new int[count];
+        int pointCount = 0;
+        int collected = 0;
+        int[] document = null;
+        int width = 0;
+        int height = 0;
+        while (collected < count - 1 || document == null) {
+            LumaDecimator.decimate(corpus.next().getNv21(), 640, 480, size, size, gray);
+            width = gray.getWidth();
+            height = gray.getHeight();
+            byte[] edge = new byte[width * height];
+            EdgeFilter.gradientMagnitude(gray.getData(), width, height, edge);
+            EdgeFilter.threshold(edge, edge.length, 127, edge);
+            int traced = tracer.trace(edge, width, height);
+            // The page is by far the largest contour of a frame
+            int largest = 0;
+            for (int i = 1; i < traced; i++) {
+                if (area(tracer, i) > area(tracer, largest)) {
+                    largest = i;
+                }
+            }
+            if (document == null && traced > 0) {
+                int start = tracer.getContourStart(largest);
+                document = Arrays.copyOfRange(tracer.getPoints(), 2 * start, 2 * (start + tracer.getContourLength(largest)));
+            }
+            for (int i = 0; i < traced && collected < count - 1; i++) {
+                if (i == largest) {
+                    continue;
+                }
+                int start = tracer.getContourStart(i);
+                points = add(points, pointCount, tracer.getPoints(), start, tracer.getContourLength(i));
+                starts[collected] = pointCount;
+                lengths[collected] = tracer.getContourLength(i);
+                pointCount += lengths[collected];
+                collected++;
+            }
+        }
+        points = add(points, pointCount, document, 0, document.length / 2);
+        starts[count - 1] = pointCount;
+        lengths[count - 1] = document.length / 2;
+        return new Contours(width, height, count, points, starts, lengths);
+    }
+
+    private static double area(ContourTracer tracer, int contour) {
+        return Math.abs(PolygonApprox.area(tracer.getPoints(), tracer.getContourStart(contour),
+                tracer.getContourLength(contour)));
+    }
+
+    /**
+     * Appends {@code count} points of {@code src} from point {@code start} after the first
+     * {@code size} points of {@code dst}, growing it as needed.
+     */
+    private static int[] add(int[] dst, int size, int[] src, int start, int count) {
+        if (dst.length < 2 * (size + count)) {
+            dst = Arrays.copyOf(dst, Math.max(2 * dst.length, 2 * (size + count)));
+        }
+        System.arraycopy(src, 2 * start, dst, 2 * size, 2 * count);
+        return dst;
+    }
+}
@@ -0,0 +1,73 @@
+package io.github.iyotetsuya.rectangledetection.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The per-contour conversions of the OpenCV Java wrappers, against copying into a reused
+ * primitive buffer as {@code OpenCVHelper.offerContours} now does.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConversionBenchmark {
+
+    // Contour lengths: a simplified quad, a ragged blob, the outline of a page at SIZE 400
+    @Param({"4", "64", "1024"})
+    public int points;
+
+    private int[] mat;
+    private LegacyContourFilter.Point[] array;
+    private List<LegacyContourFilter.Point> list;
+    private int[] buffer = new int[0];
+
+    @Setup
+    public void setUp() {
+        mat = new int[2 * points];
+        for (int i = 0; i < mat.length; i++) {
+            mat[i] = (i * 7919) % 400;
+        }
+        array = LegacyContourFilter.toArray(mat, 0, points);
+        list = Arrays.asList(array);
+    }
+
+    @Benchmark
+    public LegacyContourFilter.Point[] matOfPointToArray() {
+        return LegacyContourFilter.toArray(mat, 0, points);
+    }
+
+    @Benchmark
+    public float[] matOfPoint2fFromArray() {
+        return LegacyContourFilter.fromArray(array);
+    }
+
+    @Benchmark
+    public int[] vectorPointToMat() {
+        return LegacyContourFilter.vectorPointToMat(list);
+    }
+
+    @Benchmark
+    public int[] primitiveCopy() {
+        if (buffer.length < 2 * points) {
+            buffer = new int[2 * points];
+        }
+        System.arraycopy(mat, 0, buffer, 0, 2 * points);
+        return buffer;
+    }
+}
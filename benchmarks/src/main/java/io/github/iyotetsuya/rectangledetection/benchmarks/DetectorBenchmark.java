@@ -0,0 +1,108 @@
+package io.github.iyotetsuya.rectangledetection.benchmarks;
+
+import io.github.iyotetsuya.rectangledetection.batch.SyntheticCorpus;
+import io.github.iyotetsuya.rectangledetection.detector.ContourTracer;
+import io.github.iyotetsuya.rectangledetection.detector.EdgeFilter;
+import io.github.iyotetsuya.rectangledetection.detector.GrayImage;
+import io.github.iyotetsuya.rectangledetection.detector.JavaQuadDetector;
+import io.github.iyotetsuya.rectangledetection.detector.LumaDecimator;
+import io.github.iyotetsuya.rectangledetection.detector.RectangleDetector;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The stages of the pure-Java detector one by one, and the whole of
+ * {@link RectangleDetector#detect(byte[], int, int, float[])}, on {@link SyntheticCorpus} frames.
+ * Every stage after decimation runs on the working image of the first frame.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DetectorBenchmark {
+    private static final int FRAMES = 8;
+
+    // Preview sizes the camera picks on typical devices
+    @Param({"640x480", "1280x720", "1920x1080"})
+    public String frame;
+
+    @Param({"200", "400"})
+    public int size;
+
+    private int width;
+    private int height;
+    private byte[][] frames;
+    private int next;
+    private final GrayImage gray = new GrayImage();
+    private byte[] edge;
+    private byte[] binary;
+    private final ContourTracer tracer = new ContourTracer();
+    private RectangleDetector detector;
+    private final float[] corners = new float[8];
+
+    @Setup
+    public void setUp() {
+        String[] dimensions = frame.split("x");
+        width = Integer.parseInt(dimensions[0]);
+        height = Integer.parseInt(dimensions[1]);
+        SyntheticCorpus corpus = new SyntheticCorpus(width, height, 1, 6, 1, 20);
+        frames = new byte[FRAMES][];
+        for (int i = 0; i < FRAMES; i++) {
+            frames[i] = corpus.next().getNv21();
+        }
+        LumaDecimator.decimate(frames[0], width, height, size, size, gray);
+        edge = new byte[gray.getWidth() * gray.getHeight()];
+        binary = new byte[edge.length];
+        EdgeFilter.gradientMagnitude(gray.getData(), gray.getWidth(), gray.getHeight(), edge);
+        EdgeFilter.threshold(edge, edge.length, 127, binary);
+        detector = new RectangleDetector(new JavaQuadDetector(), size, size);
+    }
+
+    @Benchmark
+    public GrayImage decimate() {
+        LumaDecimator.decimate(nextFrame(), width, height, size, size, gray);
+        return gray;
+    }
+
+    @Benchmark
+    public byte[] gradientMagnitude() {
+        EdgeFilter.gradientMagnitude(gray.getData(), gray.getWidth(), gray.getHeight(), edge);
+        return edge;
+    }
+
+    @Benchmark
+    public byte[] threshold() {
+        EdgeFilter.threshold(edge, edge.length, 127, binary);
+        return binary;
+    }
+
+    @Benchmark
+    public int traceContours() {
+        return tracer.trace(binary, gray.getWidth(), gray.getHeight());
+    }
+
+    @Benchmark
+    public float[] detect() {
+        detector.detect(nextFrame(), width, height, corners);
+        return corners;
+    }
+
+    private byte[] nextFrame() {
+        next = (next + 1) % FRAMES;
+        return frames[next];
+    }
+}
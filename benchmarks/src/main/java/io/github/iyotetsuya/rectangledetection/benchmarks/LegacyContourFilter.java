@@ -0,0 +1,157 @@
+package io.github.iyotetsuya.rectangledetection.benchmarks;
+
+import io.github.iyotetsuya.rectangledetection.detector.PolygonApprox;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * The JVM side of the original {@code OpenCVHelper.getContoursMat} and {@code getPath}, step for
+ * step, as the baseline the primitive-array kernel is measured against.
+ *
+ * <p>The OpenCV Java wrappers cannot run without their native library, so the calls into it are
+ * replaced by their pure-Java counterparts in the detector, and the wrappers' own conversions are
+ * reproduced as they are written in OpenCV 2.4.11: {@code MatOfPoint.toArray} reads the native
+ * buffer into a fresh {@code int[]} and boxes every point, {@code MatOfPoint2f.fromArray} unboxes
+ * them into a fresh {@code float[]}, and {@code Converters.vector_Point_to_Mat} does the same from
+ * a {@code List}.</p>
+ */
+final class LegacyContourFilter {
+
+    /**
+     * Stand-in for {@code org.opencv.core.Point}, which is a plain object of two doubles.
+     */
+    static final class Point {
+        final double x;
+        final double y;
+
+        Point(double x, double y) {
+            this.x = x;
+            this.y = y;
+        }
+    }
+
+    private final PolygonApprox approx = new PolygonApprox();
+
+    /**
+     * Returns the corners of the first contour that is a large enough convex quad with nearly
+     * right angles, or an empty list.
+     */
+    List<Point> find(Contours contours) {
+        double matArea = contours.width * contours.height;
+        for (int i = 0; i < contours.count; i++) {
+            int start = contours.starts[i];
+            int count = contours.lengths[i];
+            double contoursArea = PolygonApprox.area(contours.points, start, count);
+            // MatOfPoint2f(*contours[i].toArray())
+            float[] contour = fromArray(toArray(contours.points, start, count));
+            double epsilon = arcLength(contour) * 0.1;
+            // approxPolyDP writes a new native buffer
+            int[] approxMat = new int[2 * count];
+            int approxCount = approx.approximate(contours.points, start, count, epsilon, approxMat);
+            // isContourConvex(MatOfPoint(*approx.toArray()))
+            int[] convexMat = vectorPointToMat(Arrays.asList(toArray(approxMat, 0, approxCount)));
+            if (Math.abs(contoursArea) < matArea * 0.01 || !PolygonApprox.isConvex(convexMat, approxCount)) {
+                continue;
+            }
+            List<Point> points = toList(approxMat, approxCount);
+            int pointCount = points.size();
+            LinkedList<Double> list = new LinkedList<>();
+            for (int j = 2; j < pointCount + 1; j++) {
+                list.addLast(angle(points.get(j % pointCount), points.get(j - 2), points.get(j - 1)));
+            }
+            // As written: the cosines are truncated to ints before comparing
+            list.sort((lhs, rhs) -> lhs.intValue() - rhs.intValue());
+            double minCos = list.getFirst();
+            double maxCos = list.getLast();
+            if (pointCount == 4 && minCos >= -0.3 && maxCos <= 0.5) {
+                return points;
+            }
+        }
+        return new ArrayList<>();
+    }
+
+    /**
+     * The corner order of {@code getPath}: by truncated distance from the origin.
+     */
+    static List<Point> sortForPath(List<Point> list) {
+        List<Point> points = new ArrayList<>(list);
+        points.sort(Comparator.comparingInt(LegacyContourFilter::getDistance));
+        return points;
+    }
+
+    /**
+     * {@code MatOfPoint.toArray}: copies the native buffer out and boxes each point.
+     */
+    static Point[] toArray(int[] mat, int start, int count) {
+        int[] buff = new int[2 * count];
+        System.arraycopy(mat, 2 * start, buff, 0, 2 * count);
+        Point[] points = new Point[count];
+        for (int i = 0; i < count; i++) {
+            points[i] = new Point(buff[2 * i], buff[2 * i + 1]);
+        }
+        return points;
+    }
+
+    /**
+     * {@code MatOfPoint.toList}.
+     */
+    static List<Point> toList(int[] mat, int count) {
+        return Arrays.asList(toArray(mat, 0, count));
+    }
+
+    /**
+     * {@code MatOfPoint2f.fromArray}: unboxes the points into the buffer handed to the native side.
+     */
+    static float[] fromArray(Point[] points) {
+        float[] buff = new float[2 * points.length];
+        for (int i = 0; i < points.length; i++) {
+            buff[2 * i] = (float) points[i].x;
+            buff[2 * i + 1] = (float) points[i].y;
+        }
+        return buff;
+    }
+
+    /**
+     * {@code Converters.vector_Point_to_Mat}: unboxes a list into a new {@code CV_32SC2} buffer.
+     */
+    static int[] vectorPointToMat(List<Point> points) {
+        int count = points != null ? points.size() : 0;
+        int[] buff = new int[2 * count];
+        for (int i = 0; i < count; i++) {
+            Point p = points.get(i);
+            buff[2 * i] = (int) p.x;
+            buff[2 * i + 1] = (int) p.y;
+        }
+        return buff;
+    }
+
+    /**
+     * {@code Imgproc.arcLength} of a closed curve, on the converted buffer as the original did.
+     */
+    private static double arcLength(float[] curve) {
+        int count = curve.length / 2;
+        double length = 0;
+        for (int i = 0, j = count - 1; i < count; j = i++) {
+            double dx = curve[2 * i] - curve[2 * j];
+            double dy = curve[2 * i + 1] - curve[2 * j + 1];
+            length += Math.sqrt(dx * dx + dy * dy);
+        }
+        return length;
+    }
+
+    private static double angle(Point pt1, Point pt2, Point pt0) {
+        double dx1 = pt1.x - pt0.x;
+        double dy1 = pt1.y - pt0.y;
+        double dx2 = pt2.x - pt0.x;
+        double dy2 = pt2.y - pt0.y;
+        return (dx1 * dx2 + dy1 * dy2) / Math.sqrt((dx1 * dx1 + dy1 * dy1) * (dx2 * dx2 + dy2 * dy2) + 1e-10);
+    }
+
+    private static int getDistance(Point point) {
+        return (int) Math.sqrt(Math.pow(point.x, 2.0) + Math.pow(point.y, 2.0));
+    }
+}
@@ -0,0 +1,292 @@
+package io.github.iyotetsuya.rectangledetection.detector;
+
+/**
+ * Picks the quad out of a frame's contours, working on primitive arrays only.
+ *
+ * <p>Contours are {@link #offer offered} one by one as interleaved {@code x, y} points. Each is
+ * read once: contours whose bounding box or area is below the minimum are rejected on the spot,
+ * and of the rest only the {@code maxCandidates} largest are kept. {@link #findQuad(float[])}
+ * then simplifies the candidates from the largest down and returns the first that is a convex,
+ * roughly rectangular quad. Candidate points are copied into buffers that only grow, so a kernel
+ * that has seen a few frames does not allocate.</p>
+ *
+ * <p>{@link #findQuads(byte[], QuadList)} instead tests every candidate, scores the quads and
+ * returns them ranked, with overlapping duplicates suppressed.</p>
+ *
+ * <p>Not thread-safe.</p>
+ */
+public final class ContourKernel {
+    static final double MIN_AREA_RATIO = 0.01;
+    static final double APPROX_EPSILON_RATIO = 0.1;
+    static final double MIN_COSINE = -0.3;
+    static final double MAX_COSINE = 0.5;
+    // Quads whose bounding boxes overlap a better one's by more than this are duplicates
+    static final float MAX_OVERLAP = 0.5f;
+
+    private final PolygonApprox approx = new PolygonApprox();
+    private final int[] polygon = new int[16];
+    // Candidates, largest area first
+    private final int[][] candidatePoints;
+    private final int[] candidateCounts;
+    private final int[] candidateIds;
+    private final double[] candidateAreas;
+    // Quads found by findQuads, in candidate order
+    private final float[] quadCorners;
+    private final float[] quadAreas;
+    private final float[] quadAngleQualities;
+    private final float[] quadEdgeSupports;
+    private final int[] quadOrder;
+    private int candidateCount;
+    private int width;
+    private int height;
+    private double minArea;
+    private int offered;
+    private int[] pointBuffer = new int[256];
+
+    /**
+     * @param maxCandidates how many of the largest contours to simplify per frame
+     */
+    public ContourKernel(int maxCandidates) {
+        candidatePoints = new int[maxCandidates][];
+        for (int i = 0; i < maxCandidates; i++) {
+            candidatePoints[i] = new int[64];
+        }
+        candidateCounts = new int[maxCandidates];
+        candidateIds = new int[maxCandidates];
+        candidateAreas = new double[maxCandidates];
+        quadCorners = new float[8 * maxCandidates];
+        quadAreas = new float[maxCandidates];
+        quadAngleQualities = new float[maxCandidates];
+        quadEdgeSupports = new float[maxCandidates];
+        quadOrder = new int[maxCandidates];
+    }
+
+    /**
+     * Starts a new frame of {@code width} x {@code height}.
+     */
+    public void begin(int width, int height) {
+        candidateCount = 0;
+        offered = 0;
+        this.width = width;
+        this.height = height;
+        minArea = (double) width * height * MIN_AREA_RATIO;
+    }
+
+    /**
+     * Returns a scratch array with room for {@code count} interleaved points, for callers that
+     * have to copy a contour out of another representation before offering it. The array is
+     * reused by the next call.
+     */
+    public int[] pointBuffer(int count) {
+        if (pointBuffer.length < 2 * count) {
+            pointBuffer = new int[Math.max(2 * count, 2 * pointBuffer.length)];
+        }
+        return pointBuffer;
+    }
+
+    /**
+     * Offers the closed contour of {@code count} points starting at point {@code start}. Its id,
+     * returned by {@link #findQuad(float[])}, is the number of contours offered before it.
+     */
+    public void offer(int[] points, int start, int count) {
+        int id = offered++;
+        if (count < 4 || candidatePoints.length == 0) {
+            return;
+        }
+        int base = 2 * start;
+        int minX = points[base];
+        int maxX = minX;
+        int minY = points[base + 1];
+        int maxY = minY;
+        for (int i = 1; i < count; i++) {
+            int x = points[base + 2 * i];
+            int y = points[base + 2 * i + 1];
+            if (x < minX) {
+                minX = x;
+            } else if (x > maxX) {
+                maxX = x;
+            }
+            if (y < minY) {
+                minY = y;
+            } else if (y > maxY) {
+                maxY = y;
+            }
+        }
+        // The bounding box is never smaller than the contour
+        if ((double) (maxX - minX) * (maxY - minY) < minArea) {
+            return;
+        }
+        double area = PolygonApprox.area(points, start, count);
+        if (area < minArea) {
+            return;
+        }
+        int slot = candidateCount;
+        if (candidateCount == candidatePoints.length) {
+            if (area <= candidateAreas[candidateCount - 1]) {
+                return;
+            }
+            slot = candidateCount - 1;
+        } else {
+            candidateCount++;
+        }
+        // Insert in order, reusing the buffer of the candidate that drops out
+        int[] buffer = candidatePoints[slot];
+        while (slot > 0 && candidateAreas[slot - 1] < area) {
+            candidatePoints[slot] = candidatePoints[slot - 1];
+            candidateCounts[slot] = candidateCounts[slot - 1];
+            candidateIds[slot] = candidateIds[slot - 1];
+            candidateAreas[slot] = candidateAreas[slot - 1];
+            slot--;
+        }
+        if (buffer.length < 2 * count) {
+            buffer = new int[Math.max(2 * count, 2 * buffer.length)];
+        }
+        System.arraycopy(points, base, buffer, 0, 2 * count);
+        candidatePoints[slot] = buffer;
+        candidateCounts[slot] = count;
+        candidateIds[slot] = id;
+        candidateAreas[slot] = area;
+    }
+
+    /**
+     * Writes the corners of the largest rectangular candidate to {@code corners} as
+     * {@code x0, y0, ..., x3, y3}.
+     *
+     * @return the id of its contour, or -1 if there is none
+     */
+    public int findQuad(float[] corners) {
+        for (int c = 0; c < candidateCount; c++) {
+            if (!approximateQuad(c)) {
+                continue;
+            }
+            for (int j = 0; j < 8; j++) {
+                corners[j] = polygon[j];
+            }
+            return candidateIds[c];
+        }
+        return -1;
+    }
+
+    /**
+     * Tests every candidate, scores the quads among them and writes them to {@code quads} best
+     * first, skipping any whose bounding box overlaps that of a better one by more than half.
+     *
+     * @param edges the binary edge image the contours were traced on, {@code width * height}
+     *              bytes where non-zero is an edge, for the edge support; null to count every
+     *              quad as fully supported
+     * @return the number of quads written
+     */
+    public int findQuads(byte[] edges, QuadList quads) {
+        quads.clear();
+        double imageArea = (double) width * height;
+        int found = 0;
+        for (int c = 0; c < candidateCount; c++) {
+            if (!approximateQuad(c)) {
+                continue;
+            }
+            for (int j = 0; j < 8; j++) {
+                quadCorners[8 * found + j] = polygon[j];
+            }
+            quadAreas[found] = (float) (PolygonApprox.area(polygon, 0, 4) / imageArea);
+            quadAngleQualities[found] = angleQuality(polygon);
+            quadEdgeSupports[found] = edges == null ? 1 : edgeSupport(edges, width, height, polygon);
+            // Insertion sort by score; there are only a few candidates
+            float score = score(found);
+            int slot = found;
+            while (slot > 0 && score(quadOrder[slot - 1]) < score) {
+                quadOrder[slot] = quadOrder[slot - 1];
+                slot--;
+            }
+            quadOrder[slot] = found;
+            found++;
+        }
+        for (int i = 0; i < found && quads.size() < quads.capacity(); i++) {
+            int q = quadOrder[i];
+            if (quads.maxOverlap(quadCorners, 8 * q) > MAX_OVERLAP) {
+                continue;
+            }
+            quads.add(quadCorners, 8 * q, quadAreas[q], quadAngleQualities[q], quadEdgeSupports[q]);
+        }
+        return quads.size();
+    }
+
+    private float score(int quad) {
+        return quadAreas[quad] * quadAngleQualities[quad] * quadEdgeSupports[quad];
+    }
+
+    /**
+     * Simplifies candidate {@code c} into {@link #polygon}.
+     *
+     * @return whether it is a convex, roughly rectangular quad
+     */
+    private boolean approximateQuad(int c) {
+        int[] points = candidatePoints[c];
+        int count = candidateCounts[c];
+        double epsilon = PolygonApprox.arcLength(points, 0, count) * APPROX_EPSILON_RATIO;
+        int vertices = approx.approximate(points, 0, count, epsilon, polygon);
+        return vertices == 4 && PolygonApprox.isConvex(polygon, vertices) && isRectangular(polygon, vertices);
+    }
+
+    /**
+     * Returns whether every angle of the polygon has a cosine within
+     * [{@code MIN_COSINE}, {@code MAX_COSINE}].
+     */
+    static boolean isRectangular(int[] polygon, int count) {
+        double minCos = Double.MAX_VALUE;
+        double maxCos = -Double.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            double cos = PolygonApprox.cosine(polygon, count, i);
+            minCos = Math.min(minCos, cos);
+            maxCos = Math.max(maxCos, cos);
+        }
+        return minCos >= MIN_COSINE && maxCos <= MAX_COSINE;
+    }
+
+    /**
+     * Maps the largest cosine of a rectangular quad from [0, {@code MAX_COSINE}] to a quality in
+     * [1, 0].
+     */
+    static float angleQuality(int[] quad) {
+        double maxCos = 0;
+        for (int i = 0; i < 4; i++) {
+            maxCos = Math.max(maxCos, Math.abs(PolygonApprox.cosine(quad, 4, i)));
+        }
+        return (float) Math.max(0, 1 - maxCos / Math.max(MAX_COSINE, -MIN_COSINE));
+    }
+
+    /**
+     * Returns the fraction of the quad's outline, sampled once per pixel, that has an edge pixel
+     * within one pixel of it.
+     */
+    static float edgeSupport(byte[] edges, int width, int height, int[] quad) {
+        int samples = 0;
+        int hits = 0;
+        for (int i = 0; i < 4; i++) {
+            int x0 = quad[2 * i];
+            int y0 = quad[2 * i + 1];
+            int dx = quad[(2 * i + 2) % 8] - x0;
+            int dy = quad[(2 * i + 3) % 8] - y0;
+            int steps = Math.max(Math.abs(dx), Math.abs(dy));
+            for (int k = 0; k < steps; k++) {
+                int x = x0 + Math.round((float) dx * k / steps);
+                int y = y0 + Math.round((float) dy * k / steps);
+                samples++;
+                if (hasEdgeNear(edges, width, height, x, y)) {
+                    hits++;
+                }
+            }
+        }
+        return samples == 0 ? 0 : (float) hits / samples;
+    }
+
+    private static boolean hasEdgeNear(byte[] edges, int width, int height, int x, int y) {
+        for (int ny = Math.max(0, y - 1); ny <= Math.min(height - 1, y + 1); ny++) {
+            for (int nx = Math.max(0, x - 1); nx <= Math.min(width - 1, x + 1); nx++) {
+                if (edges[ny * width + nx] != 0) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
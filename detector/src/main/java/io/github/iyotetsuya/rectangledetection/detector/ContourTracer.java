@@ -0,0 +1,235 @@
+package io.github.iyotetsuya.rectangledetection.detector;
+
+/**
+ * Extracts the outermost borders of a binary image by Suzuki-Abe border following, the algorithm
+ * behind OpenCV's {@code findContours}. Results correspond to {@code RETR_EXTERNAL} with
+ * {@code CHAIN_APPROX_SIMPLE}: only points where the border changes direction are kept.
+ *
+ * <p>Contours are stored back to back in {@link #getPoints()} as interleaved {@code x, y} pairs.
+ * Like OpenCV, the pixels on the image frame are treated as background.</p>
+ */
+public final class ContourTracer {
+    // Neighbour directions in counterclockwise order, starting east (y grows downwards)
+    private static final int[] DX = {1, 1, 0, -1, -1, -1, 0, 1};
+    private static final int[] DY = {0, -1, -1, -1, 0, 1, 1, 1};
+
+    private final int[] offsets = new int[8];
+    private int[] labels = new int[0];
+    private boolean[] borderIsHole = new boolean[16];
+    private int[] borderParent = new int[16];
+    private int[] points = new int[1024];
+    private int pointCount;
+    private int[] contourStarts = new int[64];
+    private int[] contourLengths = new int[64];
+    private int contourCount;
+
+    /**
+     * Traces all borders of {@code binary}, where any non-zero pixel is foreground, and keeps the
+     * outer borders that are not enclosed by another border.
+     *
+     * @return the number of contours found
+     */
+    public int trace(byte[] binary, int width, int height) {
+        pointCount = 0;
+        contourCount = 0;
+        if (width < 3 || height < 3) {
+            return 0;
+        }
+        int size = width * height;
+        if (labels.length < size) {
+            labels = new int[size];
+        }
+        for (int d = 0; d < 8; d++) {
+            offsets[d] = DY[d] * width + DX[d];
+        }
+        int[] image = labels;
+        for (int y = 0; y < height; y++) {
+            int row = y * width;
+            boolean frame = y == 0 || y == height - 1;
+            for (int x = 0; x < width; x++) {
+                image[row + x] = frame || x == 0 || x == width - 1 || binary[row + x] == 0 ? 0 : 1;
+            }
+        }
+
+        // Border 1 is the image frame, which behaves like a hole border
+        int nbd = 1;
+        borderIsHole[1] = true;
+        borderParent[1] = 0;
+        for (int y = 1; y < height - 1; y++) {
+            int lnbd = 1;
+            for (int x = 1; x < width - 1; x++) {
+                int index = y * width + x;
+                int value = image[index];
+                if (value == 0) {
+                    continue;
+                }
+                boolean outer = value == 1 && image[index - 1] == 0;
+                boolean hole = !outer && value >= 1 && image[index + 1] == 0;
+                if (outer || hole) {
+                    nbd++;
+                    ensureBorderCapacity(nbd);
+                    if (hole && value > 1) {
+                        lnbd = value;
+                    }
+                    borderIsHole[nbd] = hole;
+                    // An outer border inherits the parent of a preceding outer border and is a
+                    // child of a preceding hole border; a hole border is the opposite
+                    borderParent[nbd] = borderIsHole[lnbd] == hole ? borderParent[lnbd] : lnbd;
+                    boolean external = outer && borderParent[nbd] == 1;
+                    follow(image, index, outer ? 4 : 0, nbd, width, external);
+                }
+                if (image[index] != 1) {
+                    lnbd = Math.abs(image[index]);
+                }
+            }
+        }
+        return contourCount;
+    }
+
+    public int getContourCount() {
+        return contourCount;
+    }
+
+    /**
+     * Returns the index of the first point of {@code contour}; its {@code x} is at
+     * {@code getPoints()[2 * start]}.
+     */
+    public int getContourStart(int contour) {
+        return contourStarts[contour];
+    }
+
+    public int getContourLength(int contour) {
+        return contourLengths[contour];
+    }
+
+    public int[] getPoints() {
+        return points;
+    }
+
+    private void follow(int[] image, int start, int fromDirection, int nbd, int width,
+                        boolean record) {
+        int contourStart = pointCount;
+        // Look clockwise from the starting neighbour for the first non-zero pixel
+        int firstDirection = -1;
+        for (int k = 0; k < 8; k++) {
+            int d = (fromDirection - k) & 7;
+            if (image[start + offsets[d]] != 0) {
+                firstDirection = d;
+                break;
+            }
+        }
+        if (firstDirection < 0) {
+            // Isolated pixel
+            image[start] = -nbd;
+            if (record) {
+                addPoint(start, width);
+                addContour(contourStart);
+            }
+            return;
+        }
+
+        int last = start + offsets[firstDirection];
+        int current = start;
+        int backDirection = firstDirection;
+        while (true) {
+            if (record) {
+                addPoint(current, width);
+            }
+            // Look counterclockwise, starting after the pixel we came from
+            int direction = backDirection;
+            boolean eastIsBackground = false;
+            for (int k = 1; k <= 8; k++) {
+                direction = (backDirection + k) & 7;
+                if (image[current + offsets[direction]] != 0) {
+                    break;
+                }
+                if (direction == 0) {
+                    eastIsBackground = true;
+                }
+            }
+            if (eastIsBackground) {
+                image[current] = -nbd;
+            } else if (image[current] == 1) {
+                image[current] = nbd;
+            }
+            int next = current + offsets[direction];
+            if (next == start && current == last) {
+                break;
+            }
+            backDirection = (direction + 4) & 7;
+            current = next;
+        }
+        if (record) {
+            compress(contourStart);
+            addContour(contourStart);
+        }
+    }
+
+    /**
+     * Drops the points of the contour starting at {@code contourStart} that lie on a straight run,
+     * keeping only those where the step direction changes.
+     */
+    private void compress(int contourStart) {
+        int n = pointCount - contourStart;
+        if (n < 3) {
+            return;
+        }
+        int base = 2 * contourStart;
+        int firstX = points[base];
+        int firstY = points[base + 1];
+        int prevX = points[base + 2 * (n - 1)];
+        int prevY = points[base + 2 * (n - 1) + 1];
+        int write = base;
+        for (int i = 0; i < n; i++) {
+            int x = points[base + 2 * i];
+            int y = points[base + 2 * i + 1];
+            int nextX = i + 1 < n ? points[base + 2 * (i + 1)] : firstX;
+            int nextY = i + 1 < n ? points[base + 2 * (i + 1) + 1] : firstY;
+            if (x - prevX != nextX - x || y - prevY != nextY - y) {
+                points[write++] = x;
+                points[write++] = y;
+            }
+            prevX = x;
+            prevY = y;
+        }
+        pointCount = write / 2;
+    }
+
+    private void addPoint(int index, int width) {
+        if (2 * pointCount + 2 > points.length) {
+            int[] grown = new int[points.length * 2];
+            System.arraycopy(points, 0, grown, 0, 2 * pointCount);
+            points = grown;
+        }
+        points[2 * pointCount] = index % width;
+        points[2 * pointCount + 1] = index / width;
+        pointCount++;
+    }
+
+    private void addContour(int start) {
+        if (contourCount == contourStarts.length) {
+            int[] starts = new int[contourCount * 2];
+            int[] lengths = new int[contourCount * 2];
+            System.arraycopy(contourStarts, 0, starts, 0, contourCount);
+            System.arraycopy(contourLengths, 0, lengths, 0, contourCount);
+            contourStarts = starts;
+            contourLengths = lengths;
+        }
+        contourStarts[contourCount] = start;
+        contourLengths[contourCount] = pointCount - start;
+        contourCount++;
+    }
+
+    private void ensureBorderCapacity(int nbd) {
+        if (nbd < borderIsHole.length) {
+            return;
+        }
+        int capacity = borderIsHole.length * 2;
+        boolean[] isHole = new boolean[capacity];
+        int[] parent = new int[capacity];
+        System.arraycopy(borderIsHole, 0, isHole, 0, borderIsHole.length);
+        System.arraycopy(borderParent, 0, parent, 0, borderParent.length);
+        borderIsHole = isHole;
+        borderParent = parent;
+    }
+}
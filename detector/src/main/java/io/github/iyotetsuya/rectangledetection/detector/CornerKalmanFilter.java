@@ -0,0 +1,192 @@
+package io.github.iyotetsuya.rectangledetection.detector;
+
+/**
+ * Constant-velocity Kalman filter over the eight coordinates of a quad's corners, so corners can
+ * be drawn at display rate from detections that arrive less often or not at all for a while.
+ *
+ * <p>The state is the position and velocity of every coordinate, sixteen values in all, with
+ * white-acceleration process noise and independent measurement noise. Coordinates do not
+ * interact in this model, so the filter runs as eight two-state filters in closed form, which is
+ * exactly equivalent to the 16-state filter and does not allocate. The state stays at the time of
+ * the last detection; predictions extrapolate from it without changing it, so a detection that
+ * arrives after corners were already predicted past its capture time is still fused at the time
+ * it was seen.</p>
+ *
+ * <p>Corners are put into a fixed order before filtering, see {@link #orderCorners(float[])}.
+ * Prediction stops after {@code timeoutNanos} without a detection, and a detection farther than
+ * {@code gate} from the predicted quad restarts the filter there instead of pulling the old quad
+ * across. Not thread-safe.</p>
+ */
+public final class CornerKalmanFilter {
+    private static final int N = 8;
+
+    private final double accelerationVariance;
+    private final double measurementVariance;
+    private final long timeoutNanos;
+    private final double gate;
+    private final double initialVelocityVariance;
+
+    private final double[] position = new double[N];
+    private final double[] velocity = new double[N];
+    // Covariance of each coordinate: [[p00, p01], [p01, p11]]
+    private final double[] p00 = new double[N];
+    private final double[] p01 = new double[N];
+    private final double[] p11 = new double[N];
+    private final float[] measurement = new float[N];
+    private boolean tracking;
+    private long stateTime;
+    private long measurementTime;
+
+    /**
+     * @param acceleration      standard deviation of corner acceleration, in units per s^2
+     * @param measurementError  standard deviation of a detected coordinate, in units
+     * @param timeoutNanos      how long to keep predicting without a detection
+     * @param gate              mean corner distance beyond which a detection restarts the filter
+     */
+    public CornerKalmanFilter(double acceleration, double measurementError, long timeoutNanos,
+                              double gate) {
+        this.accelerationVariance = acceleration * acceleration;
+        this.measurementVariance = measurementError * measurementError;
+        this.timeoutNanos = timeoutNanos;
+        this.gate = gate;
+        // Unknown at first, allow roughly a gate's distance per second
+        this.initialVelocityVariance = gate * gate;
+    }
+
+    public boolean isTracking() {
+        return tracking;
+    }
+
+    public void reset() {
+        tracking = false;
+    }
+
+    /**
+     * Corrects the state with the detected {@code corners}, given as {@code x0, y0, ..., x3, y3}
+     * in any order, seen at {@code timeNanos}.
+     */
+    public void update(float[] corners, long timeNanos) {
+        System.arraycopy(corners, 0, measurement, 0, N);
+        orderCorners(measurement);
+        if (!tracking || timeNanos - measurementTime > timeoutNanos) {
+            start(timeNanos);
+            return;
+        }
+        advance(timeNanos);
+        double distance = 0;
+        for (int i = 0; i < N; i += 2) {
+            double dx = measurement[i] - position[i];
+            double dy = measurement[i + 1] - position[i + 1];
+            distance += Math.sqrt(dx * dx + dy * dy) / 4;
+        }
+        if (distance > gate) {
+            start(timeNanos);
+            return;
+        }
+        for (int i = 0; i < N; i++) {
+            double s = p00[i] + measurementVariance;
+            double k0 = p00[i] / s;
+            double k1 = p01[i] / s;
+            double residual = measurement[i] - position[i];
+            position[i] += k0 * residual;
+            velocity[i] += k1 * residual;
+            p11[i] -= k1 * p01[i];
+            p00[i] *= 1 - k0;
+            p01[i] *= 1 - k0;
+        }
+        measurementTime = timeNanos;
+    }
+
+    /**
+     * Writes the corners predicted for {@code timeNanos} to {@code corners}, in the order of
+     * {@link #orderCorners(float[])}. Times before the last update give the corners of that
+     * update.
+     *
+     * @return false if there is nothing to draw: no detection yet, or none for too long
+     */
+    public boolean predict(long timeNanos, float[] corners) {
+        if (!tracking) {
+            return false;
+        }
+        if (timeNanos - measurementTime > timeoutNanos) {
+            tracking = false;
+            return false;
+        }
+        double dt = Math.max(0, timeNanos - stateTime) / 1e9;
+        for (int i = 0; i < N; i++) {
+            corners[i] = (float) (position[i] + velocity[i] * dt);
+        }
+        return true;
+    }
+
+    /**
+     * Reorders the four corners {@code x0, y0, ..., x3, y3} in place: clockwise on screen (with
+     * {@code y} growing downwards), starting from the corner with the smallest {@code x + y}.
+     */
+    public static void orderCorners(float[] corners) {
+        float centerX = (corners[0] + corners[2] + corners[4] + corners[6]) / 4;
+        float centerY = (corners[1] + corners[3] + corners[5] + corners[7]) / 4;
+        // Insertion sort by angle around the centre
+        for (int i = 1; i < 4; i++) {
+            float x = corners[2 * i];
+            float y = corners[2 * i + 1];
+            double angle = Math.atan2(y - centerY, x - centerX);
+            int j = i - 1;
+            while (j >= 0 && Math.atan2(corners[2 * j + 1] - centerY, corners[2 * j] - centerX) > angle) {
+                corners[2 * j + 2] = corners[2 * j];
+                corners[2 * j + 3] = corners[2 * j + 1];
+                j--;
+            }
+            corners[2 * j + 2] = x;
+            corners[2 * j + 3] = y;
+        }
+        int first = 0;
+        for (int i = 1; i < 4; i++) {
+            if (corners[2 * i] + corners[2 * i + 1] < corners[2 * first] + corners[2 * first + 1]) {
+                first = i;
+            }
+        }
+        for (int k = 0; k < first; k++) {
+            float x = corners[0];
+            float y = corners[1];
+            System.arraycopy(corners, 2, corners, 0, 6);
+            corners[6] = x;
+            corners[7] = y;
+        }
+    }
+
+    private void start(long timeNanos) {
+        for (int i = 0; i < N; i++) {
+            position[i] = measurement[i];
+            velocity[i] = 0;
+            p00[i] = measurementVariance;
+            p01[i] = 0;
+            p11[i] = initialVelocityVariance;
+        }
+        tracking = true;
+        stateTime = timeNanos;
+        measurementTime = timeNanos;
+    }
+
+    /**
+     * Moves the state forward to the detection at {@code timeNanos}; one older than the state is
+     * fused at the state's time.
+     */
+    private void advance(long timeNanos) {
+        if (timeNanos <= stateTime) {
+            return;
+        }
+        double dt = (timeNanos - stateTime) / 1e9;
+        stateTime = timeNanos;
+        double dt2 = dt * dt;
+        double q00 = accelerationVariance * dt2 * dt2 / 4;
+        double q01 = accelerationVariance * dt2 * dt / 2;
+        double q11 = accelerationVariance * dt2;
+        for (int i = 0; i < N; i++) {
+            position[i] += velocity[i] * dt;
+            p00[i] += dt * (2 * p01[i] + dt * p11[i]) + q00;
+            p01[i] += dt * p11[i] + q01;
+            p11[i] += q11;
+        }
+    }
+}
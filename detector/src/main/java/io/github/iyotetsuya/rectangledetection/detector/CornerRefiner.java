@@ -0,0 +1,16 @@
+package io.github.iyotetsuya.rectangledetection.detector;
+
+/**
+ * Moves corners found on a decimated image to their precise position in the full-resolution
+ * frame. Like {@link QuadDetector}, implementations may keep scratch state and are not
+ * thread-safe.
+ */
+public interface CornerRefiner {
+    /**
+     * @param luma    the frame's Y plane, row-major, {@code width} bytes per row
+     * @param corners the four corners as {@code x0, y0, ..., x3, y3} in frame coordinates, refined
+     *                in place; corners that cannot be refined are left as they are
+     * @param radius  how far, in frame pixels, the corners may be from their true position
+     */
+    void refine(byte[] luma, int width, int height, float[] corners, float radius);
+}
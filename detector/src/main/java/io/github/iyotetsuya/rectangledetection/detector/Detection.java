@@ -0,0 +1,47 @@
+package io.github.iyotetsuya.rectangledetection.detector;
+
+/**
+ * Result of one {@link RectangleDetector#detect} call made by a {@link DetectorPool}.
+ */
+public final class Detection {
+    private final long sequence;
+    private final int width;
+    private final int height;
+    private final boolean found;
+    private final float[] corners;
+
+    Detection(long sequence, int width, int height, boolean found, float[] corners) {
+        this.sequence = sequence;
+        this.width = width;
+        this.height = height;
+        this.found = found;
+        this.corners = corners;
+    }
+
+    /**
+     * Position of the input among everything submitted to the pool, starting at 0.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public boolean isFound() {
+        return found;
+    }
+
+    /**
+     * The corners as {@code x0, y0, ..., x3, y3} in input coordinates; undefined unless
+     * {@link #isFound()}.
+     */
+    public float[] getCorners() {
+        return corners;
+    }
+}
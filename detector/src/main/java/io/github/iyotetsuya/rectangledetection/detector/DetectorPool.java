@@ -0,0 +1,190 @@
+package io.github.iyotetsuya.rectangledetection.detector;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs {@link RectangleDetector}s on a fixed number of worker threads, one detector per thread.
+ *
+ * <p>Streams of frames go through {@link #trySubmit}: frames are detected in parallel and handed
+ * to the {@link Listener} in the order they were submitted, one at a time. At most
+ * {@code maxInFlight} frames are in progress; beyond that, frames are refused so the caller can
+ * drop them. Batches of still images go through {@link #detectAll(List)}.</p>
+ *
+ * @param <T> the caller's frame object, passed back to the listener with its result
+ */
+public final class DetectorPool<T> implements Closeable {
+
+    /**
+     * Receives stream results in submission order. Calls never overlap.
+     */
+    public interface Listener<T> {
+        void onDetection(T frame, Detection detection);
+    }
+
+    /**
+     * Creates the detector of one worker thread.
+     */
+    public interface Factory {
+        RectangleDetector create();
+    }
+
+    private final ExecutorService executor;
+    private final ThreadLocal<RectangleDetector> detectors;
+    private final Listener<T> listener;
+    private final Semaphore inFlight;
+    // Finished frames waiting for an earlier one, by sequence number
+    private final Map<Long, Completed<T>> completed = new HashMap<>();
+    private long nextSequence;
+    private long nextDelivery;
+    private boolean closed;
+
+    /**
+     * @param threads     number of worker threads
+     * @param maxInFlight maximum number of frames submitted but not yet delivered
+     * @param factory     creates the detector of each worker thread
+     * @param listener    receives stream results; may be null if only {@link #detectAll} is used
+     */
+    public DetectorPool(int threads, int maxInFlight, Factory factory, Listener<T> listener) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be positive: " + threads);
+        }
+        this.detectors = new ThreadLocal<RectangleDetector>() {
+            @Override
+            protected RectangleDetector initialValue() {
+                return factory.create();
+            }
+        };
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(() -> {
+                try {
+                    runnable.run();
+                } finally {
+                    closeDetector();
+                }
+            }, "detector-" + threadCount.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.listener = listener;
+        this.inFlight = new Semaphore(maxInFlight);
+    }
+
+    /**
+     * Queues {@code data} for detection unless {@code maxInFlight} frames are already in progress
+     * or the pool is closed. {@code data} must not be modified until the listener receives
+     * {@code frame}.
+     *
+     * @return false if the frame was refused
+     */
+    public synchronized boolean trySubmit(T frame, byte[] data, int width, int height) {
+        if (closed || !inFlight.tryAcquire()) {
+            return false;
+        }
+        long sequence = nextSequence++;
+        executor.execute(() -> {
+            float[] corners = new float[8];
+            boolean found = false;
+            try {
+                found = detectors.get().detect(data, width, height, corners);
+            } finally {
+                complete(sequence, frame, new Detection(sequence, width, height, found, corners));
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Detects in every image in parallel and waits for all of them.
+     *
+     * @return the results in the order of {@code images}, each with its index as sequence number
+     */
+    public List<Detection> detectAll(List<GrayImage> images) throws InterruptedException {
+        List<Future<Detection>> futures = new ArrayList<>(images.size());
+        for (int i = 0; i < images.size(); i++) {
+            GrayImage image = images.get(i);
+            long sequence = i;
+            futures.add(executor.submit((Callable<Detection>) () -> {
+                float[] corners = new float[8];
+                boolean found = detectors.get().detect(image.getData(), image.getWidth(),
+                        image.getHeight(), corners);
+                return new Detection(sequence, image.getWidth(), image.getHeight(), found, corners);
+            }));
+        }
+        List<Detection> detections = new ArrayList<>(images.size());
+        for (Future<Detection> future : futures) {
+            try {
+                detections.add(future.get());
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new IllegalStateException(cause);
+            }
+        }
+        return detections;
+    }
+
+    /**
+     * Refuses new frames. Frames already submitted are still detected and delivered; each worker
+     * then closes its {@link QuadDetector} if that is {@link Closeable}.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        executor.shutdown();
+    }
+
+    // Runs on a worker thread as it exits, the only thread that may use its detector
+    private void closeDetector() {
+        QuadDetector quadDetector = detectors.get().getQuadDetector();
+        detectors.remove();
+        if (quadDetector instanceof Closeable) {
+            try {
+                ((Closeable) quadDetector).close();
+            } catch (IOException e) {
+                // The worker is exiting; there is no one left to report to
+            }
+        }
+    }
+
+    private void complete(long sequence, T frame, Detection detection) {
+        synchronized (completed) {
+            completed.put(sequence, new Completed<>(frame, detection));
+            Completed<T> next;
+            while ((next = completed.remove(nextDelivery)) != null) {
+                nextDelivery++;
+                inFlight.release();
+                if (listener != null) {
+                    listener.onDetection(next.frame, next.detection);
+                }
+            }
+        }
+    }
+
+    private static final class Completed<T> {
+        final T frame;
+        final Detection detection;
+
+        Completed(T frame, Detection detection) {
+            this.frame = frame;
+            this.detection = detection;
+        }
+    }
+}
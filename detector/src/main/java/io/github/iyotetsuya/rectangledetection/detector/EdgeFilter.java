@@ -0,0 +1,49 @@
+package io.github.iyotetsuya.rectangledetection.detector;
+
+/**
+ * Gradient magnitude and binarization on primitive buffers, matching what the OpenCV path does
+ * with {@code Sobel}, {@code convertScaleAbs}, {@code addWeighted} and {@code threshold}.
+ */
+public final class EdgeFilter {
+    private EdgeFilter() {
+    }
+
+    /**
+     * Writes {@code (|Sobel_x| + |Sobel_y|) / 2} of a 3x3 Sobel, each term saturated to 255, into
+     * {@code dst}. Borders are reflected without repeating the edge pixel, as OpenCV's default
+     * {@code BORDER_REFLECT_101} does.
+     */
+    public static void gradientMagnitude(byte[] src, int width, int height, byte[] dst) {
+        for (int y = 0; y < height; y++) {
+            int up = (y > 0 ? y - 1 : Math.min(1, height - 1)) * width;
+            int mid = y * width;
+            int down = (y < height - 1 ? y + 1 : Math.max(height - 2, 0)) * width;
+            for (int x = 0; x < width; x++) {
+                int left = x > 0 ? x - 1 : Math.min(1, width - 1);
+                int right = x < width - 1 ? x + 1 : Math.max(width - 2, 0);
+                int tl = src[up + left] & 0xff;
+                int tc = src[up + x] & 0xff;
+                int tr = src[up + right] & 0xff;
+                int ml = src[mid + left] & 0xff;
+                int mr = src[mid + right] & 0xff;
+                int bl = src[down + left] & 0xff;
+                int bc = src[down + x] & 0xff;
+                int br = src[down + right] & 0xff;
+                int gx = (tr + 2 * mr + br) - (tl + 2 * ml + bl);
+                int gy = (bl + 2 * bc + br) - (tl + 2 * tc + tr);
+                int ax = Math.min(Math.abs(gx), 255);
+                int ay = Math.min(Math.abs(gy), 255);
+                dst[mid + x] = (byte) ((ax + ay + 1) >> 1);
+            }
+        }
+    }
+
+    /**
+     * Sets pixels brighter than {@code threshold} to 255 and all others to 0.
+     */
+    public static void threshold(byte[] src, int length, int threshold, byte[] dst) {
+        for (int i = 0; i < length; i++) {
+            dst[i] = (src[i] & 0xff) > threshold ? (byte) 255 : 0;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package io.github.iyotetsuya.rectangledetection.detector;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * One NV21 frame delivered by a {@link FrameSource}. When its data belongs to a recycled buffer
+ * pool, {@link #release()} must be called once the frame is no longer read; it is idempotent.
+ */
+public final class Frame {
+
+    /**
+     * Takes back the buffer of a released frame.
+     */
+    public interface Recycler {
+        void recycle(byte[] data);
+    }
+
+    private final byte[] data;
+    private final int width;
+    private final int height;
+    private final long timestampNanos;
+    private final Recycler recycler;
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    /**
+     * @param timestampNanos when the frame was captured, on the {@link System#nanoTime()} clock
+     * @param recycler       takes the buffer back on {@link #release()}; may be null
+     */
+    public Frame(byte[] data, int width, int height, long timestampNanos, Recycler recycler) {
+        this.data = data;
+        this.width = width;
+        this.height = height;
+        this.timestampNanos = timestampNanos;
+        this.recycler = recycler;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public long getTimestampNanos() {
+        return timestampNanos;
+    }
+
+    public void release() {
+        if (released.compareAndSet(false, true) && recycler != null) {
+            recycler.recycle(data);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package io.github.iyotetsuya.rectangledetection.detector;
+
+/**
+ * Everything one frame carries through the {@link FrameProcessor}s: the frame itself, its working
+ * image and the quad found in it, or the quads for multi-quad detection. Contexts are reused from
+ * frame to frame, so processing does not allocate; a context may be handed to another thread
+ * through a queue.
+ */
+public final class FrameContext {
+    private final LumaFrame luma = new LumaFrame();
+    private final float[] corners = new float[8];
+    private final QuadList quads;
+    private volatile Frame frame;
+    private long timestampNanos;
+    private boolean found;
+
+    public FrameContext() {
+        this(0);
+    }
+
+    /**
+     * @param maxQuads the most quads {@link #getQuads()} can hold
+     */
+    public FrameContext(int maxQuads) {
+        quads = new QuadList(maxQuads);
+    }
+
+    /**
+     * Starts on {@code frame}, forgetting what was found in the previous one.
+     */
+    public void reset(Frame frame) {
+        this.frame = frame;
+        timestampNanos = frame.getTimestampNanos();
+        found = false;
+        quads.clear();
+    }
+
+    /**
+     * Returns the frame, or null once it has been released.
+     */
+    public Frame getFrame() {
+        return frame;
+    }
+
+    /**
+     * Returns when the frame was captured, which outlives the frame itself.
+     */
+    public long getTimestampNanos() {
+        return timestampNanos;
+    }
+
+    public LumaFrame getLuma() {
+        return luma;
+    }
+
+    /**
+     * Returns the corners of the quad as {@code x0, y0, ..., x3, y3} in frame coordinates; valid
+     * while {@link #isFound()}.
+     */
+    public float[] getCorners() {
+        return corners;
+    }
+
+    /**
+     * Returns the quads in frame coordinates, best first, for multi-quad detection.
+     */
+    public QuadList getQuads() {
+        return quads;
+    }
+
+    public boolean isFound() {
+        return found;
+    }
+
+    public void setFound(boolean found) {
+        this.found = found;
+    }
+
+    /**
+     * Releases the frame back to its source, for instance once only the working image is read.
+     */
+    public void releaseFrame() {
+        Frame frame = this.frame;
+        this.frame = null;
+        if (frame != null) {
+            frame.release();
+        }
+    }
+}
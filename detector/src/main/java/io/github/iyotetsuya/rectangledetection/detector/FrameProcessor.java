@@ -0,0 +1,10 @@
+package io.github.iyotetsuya.rectangledetection.detector;
+
+/**
+ * One step of frame processing, such as decimation or detection. It runs synchronously on the
+ * calling thread and updates the {@link FrameContext} in place instead of returning a result.
+ * Steps are run in order by a {@link FrameProcessorChain}.
+ */
+public interface FrameProcessor {
+    void process(FrameContext context);
+}
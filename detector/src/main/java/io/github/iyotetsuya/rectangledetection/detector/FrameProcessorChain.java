@@ -0,0 +1,39 @@
+package io.github.iyotetsuya.rectangledetection.detector;
+
+import java.util.Arrays;
+
+/**
+ * Runs {@link FrameProcessor}s one after the other on the same {@link FrameContext}, recording a
+ * {@link Tracer} span for each. Running the chain costs a method call per step.
+ */
+public final class FrameProcessorChain implements FrameProcessor {
+    private String[] names = new String[0];
+    private FrameProcessor[] processors = new FrameProcessor[0];
+
+    /**
+     * Appends {@code processor}, traced as {@code name}.
+     *
+     * @return this chain
+     */
+    public FrameProcessorChain add(String name, FrameProcessor processor) {
+        int count = processors.length;
+        names = Arrays.copyOf(names, count + 1);
+        processors = Arrays.copyOf(processors, count + 1);
+        names[count] = name;
+        processors[count] = processor;
+        return this;
+    }
+
+    public int size() {
+        return processors.length;
+    }
+
+    @Override
+    public void process(FrameContext context) {
+        for (int i = 0; i < processors.length; i++) {
+            long span = Tracer.begin();
+            processors[i].process(context);
+            Tracer.end(names[i], span);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package io.github.iyotetsuya.rectangledetection.detector;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Writes NV21 frames of one size to a file that {@link ReplayFrameSource} can play back.
+ *
+ * <p>The file is a header of four big-endian ints, {@code 'NV21'}, the format version, the width
+ * and the height, followed by one record per frame: its timestamp as a big-endian long, then
+ * {@code width * height * 3 / 2} bytes of NV21 data.</p>
+ *
+ * <p>Not thread-safe.</p>
+ */
+public final class FrameRecorder implements Closeable {
+    static final int MAGIC = 0x4e563231;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 16;
+    static final int TIMESTAMP_SIZE = 8;
+
+    private final DataOutputStream out;
+    private final int width;
+    private final int height;
+    private long frameCount;
+
+    public FrameRecorder(File file, int width, int height) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+        this.width = width;
+        this.height = height;
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(width);
+        out.writeInt(height);
+    }
+
+    /**
+     * Appends the first {@code width * height * 3 / 2} bytes of {@code data}.
+     */
+    public void write(byte[] data, long timestampNanos) throws IOException {
+        out.writeLong(timestampNanos);
+        out.write(data, 0, frameSize(width, height));
+        frameCount++;
+    }
+
+    /**
+     * Appends {@code frame}, which must have the recorder's size.
+     */
+    public void write(Frame frame) throws IOException {
+        if (frame.getWidth() != width || frame.getHeight() != height) {
+            throw new IllegalArgumentException("frame is " + frame.getWidth() + "x" + frame.getHeight()
+                    + ", recording is " + width + "x" + height);
+        }
+        write(frame.getData(), frame.getTimestampNanos());
+    }
+
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    static int frameSize(int width, int height) {
+        return width * height * 3 / 2;
+    }
+}
@@ -0,0 +1,31 @@
+package io.github.iyotetsuya.rectangledetection.detector;
+
+import java.io.Closeable;
+
+/**
+ * Produces NV21 frames, from a camera or from a recording, so the code that consumes them does
+ * not depend on where they come from.
+ */
+public interface FrameSource extends Closeable {
+
+    /**
+     * Receives the frames of a source, one call at a time, on a thread of the source's choosing.
+     * Each frame must be {@link Frame#release() released} once it is no longer read; the source
+     * may run out of buffers otherwise.
+     */
+    interface Listener {
+        void onFrame(Frame frame);
+    }
+
+    /**
+     * Starts delivering frames to {@code listener}. A source can only be started once.
+     */
+    void start(Listener listener);
+
+    /**
+     * Stops delivering frames and frees the source's resources. Frames already delivered stay
+     * valid until released.
+     */
+    @Override
+    void close();
+}
@@ -0,0 +1,31 @@
+package io.github.iyotetsuya.rectangledetection.detector;
+
+/**
+ * Reusable 8-bit grayscale image. The backing array only grows, so an instance reused for frames
+ * of the same size never allocates after the first one.
+ */
+public final class GrayImage {
+    private byte[] data = new byte[0];
+    private int width;
+    private int height;
+
+    public void reset(int width, int height) {
+        if (data.length < width * height) {
+            data = new byte[width * height];
+        }
+        this.width = width;
+        this.height = height;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+}
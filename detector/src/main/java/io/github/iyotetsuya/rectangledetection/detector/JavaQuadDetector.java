@@ -0,0 +1,62 @@
+package io.github.iyotetsuya.rectangledetection.detector;
+
+/**
+ * Pure-Java {@link MultiQuadDetector} that runs the same steps as the OpenCV pipeline in
+ * {@code OpenCVHelper}: gradient magnitude, binarization, external contour extraction,
+ * and a {@link ContourKernel} for simplification and the convexity and angle checks.
+ *
+ * <p>All scratch buffers are owned by the instance and only grow, so once it has seen a frame of
+ * the working size, {@link #detect} does not allocate.</p>
+ */
+public class JavaQuadDetector implements MultiQuadDetector {
+    static final int EDGE_THRESHOLD = 127;
+    static final int MAX_CANDIDATES = 8;
+
+    private final ContourTracer tracer = new ContourTracer();
+    private final ContourKernel kernel = new ContourKernel(MAX_CANDIDATES);
+    private byte[] edge = new byte[0];
+    private byte[] binary = new byte[0];
+
+    @Override
+    public boolean detect(byte[] gray, int width, int height, float[] corners) {
+        traceContours(gray, width, height);
+        long span = Tracer.begin();
+        boolean found = kernel.findQuad(corners) >= 0;
+        Tracer.end("findQuad", span);
+        return found;
+    }
+
+    @Override
+    public int detectAll(byte[] gray, int width, int height, QuadList quads) {
+        traceContours(gray, width, height);
+        long span = Tracer.begin();
+        int count = kernel.findQuads(binary, quads);
+        Tracer.end("findQuads", span);
+        return count;
+    }
+
+    /**
+     * Extracts the external contours of {@code gray} and offers them to {@link #kernel}.
+     */
+    private void traceContours(byte[] gray, int width, int height) {
+        int size = width * height;
+        if (edge.length < size) {
+            edge = new byte[size];
+            binary = new byte[size];
+        }
+        long span = Tracer.begin();
+        EdgeFilter.gradientMagnitude(gray, width, height, edge);
+        Tracer.end("gradientMagnitude", span);
+        span = Tracer.begin();
+        EdgeFilter.threshold(edge, size, EDGE_THRESHOLD, binary);
+        Tracer.end("threshold", span);
+        span = Tracer.begin();
+        int contourCount = tracer.trace(binary, width, height);
+        int[] points = tracer.getPoints();
+        kernel.begin(width, height);
+        for (int i = 0; i < contourCount; i++) {
+            kernel.offer(points, tracer.getContourStart(i), tracer.getContourLength(i));
+        }
+        Tracer.end("traceContours", span);
+    }
+}
@@ -0,0 +1,73 @@
+package io.github.iyotetsuya.rectangledetection.detector;
+
+/**
+ * Builds a small grayscale working image straight from the Y plane of an NV21 (or any planar
+ * YUV) frame, without color conversion.
+ */
+public final class LumaDecimator {
+    private LumaDecimator() {
+    }
+
+    /**
+     * Decimates the {@code width} x {@code height} Y plane at the start of {@code yuv} so that it
+     * fits in {@code maxWidth} x {@code maxHeight}, keeping the aspect ratio. Each output pixel
+     * averages the 2x2 block at its sample position, touching only four source bytes. Unlike an
+     * area average (OpenCV's INTER_AREA), this low-pass is too narrow to prevent aliasing once the
+     * factor exceeds 2, which is the usual case for camera frames. Fine texture can therefore alias
+     * into the working image. Quad outlines are wide, high-contrast edges and survive this.
+     */
+    public static void decimate(byte[] yuv, int width, int height, float maxWidth, float maxHeight,
+                                GrayImage dst) {
+        decimateRegion(yuv, width, 0, 0, width, height,
+                scaleRatio(width, height, maxWidth, maxHeight), dst);
+    }
+
+    /**
+     * Returns the factor by which {@link #decimate} shrinks a {@code width} x {@code height} frame
+     * to fit in {@code maxWidth} x {@code maxHeight}.
+     */
+    public static float scaleRatio(int width, int height, float maxWidth, float maxHeight) {
+        float ratioW = width / maxWidth;
+        float ratioH = height / maxHeight;
+        return ratioW > ratioH ? ratioW : ratioH;
+    }
+
+    /**
+     * Decimates the {@code regionWidth} x {@code regionHeight} region at {@code left, top} of the
+     * Y plane, whose rows are {@code width} bytes long, shrinking it by {@code scaleRatio}. Using
+     * the full frame's {@link #scaleRatio} keeps a region at the resolution the whole frame would
+     * be decimated to, so the output, and everything run on it, shrinks with the region.
+     */
+    public static void decimateRegion(byte[] yuv, int width, int left, int top,
+                                      int regionWidth, int regionHeight, float scaleRatio,
+                                      GrayImage dst) {
+        int dstWidth = Math.max(1, (int) (regionWidth / scaleRatio));
+        int dstHeight = Math.max(1, (int) (regionHeight / scaleRatio));
+        dst.reset(dstWidth, dstHeight);
+        decimate(yuv, width, top * width + left, regionWidth, regionHeight,
+                dst.getData(), dstWidth, dstHeight);
+    }
+
+    static void decimate(byte[] src, int srcStride, int srcOffset, int srcWidth, int srcHeight,
+                         byte[] dst, int dstWidth, int dstHeight) {
+        // 16.16 fixed-point source step per output pixel
+        int stepX = (srcWidth << 16) / dstWidth;
+        int stepY = (srcHeight << 16) / dstHeight;
+        int dstIndex = 0;
+        int sy = 0;
+        for (int y = 0; y < dstHeight; y++) {
+            int row0 = srcOffset + (sy >> 16) * srcStride;
+            int row1 = (sy >> 16) + 1 < srcHeight ? row0 + srcStride : row0;
+            int sx = 0;
+            for (int x = 0; x < dstWidth; x++) {
+                int x0 = sx >> 16;
+                int x1 = x0 + 1 < srcWidth ? x0 + 1 : x0;
+                int sum = (src[row0 + x0] & 0xff) + (src[row0 + x1] & 0xff)
+                        + (src[row1 + x0] & 0xff) + (src[row1 + x1] & 0xff);
+                dst[dstIndex++] = (byte) ((sum + 2) >> 2);
+                sx += stepX;
+            }
+            sy += stepY;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package io.github.iyotetsuya.rectangledetection.detector;
+
+/**
+ * Working image decimated from a frame, or from a region of it, together with what is needed to
+ * map points found in it back to frame coordinates. Reusable; see
+ * {@link RectangleDetector#decimate(byte[], int, int, LumaFrame)}.
+ */
+public final class LumaFrame {
+    private final GrayImage image = new GrayImage();
+    private final int[] region = new int[4];
+    private int frameWidth;
+    private int frameHeight;
+
+    public GrayImage getImage() {
+        return image;
+    }
+
+    public int getFrameWidth() {
+        return frameWidth;
+    }
+
+    public int getFrameHeight() {
+        return frameHeight;
+    }
+
+    /**
+     * Returns how many frame pixels one image pixel spans.
+     */
+    public float getScale() {
+        return Math.max((float) region[2] / image.getWidth(), (float) region[3] / image.getHeight());
+    }
+
+    /**
+     * Maps the four corners {@code x0, y0, ..., x3, y3} from image to frame coordinates in place.
+     */
+    public void toFrameCoordinates(float[] corners) {
+        float scaleX = (float) region[2] / image.getWidth();
+        float scaleY = (float) region[3] / image.getHeight();
+        for (int i = 0; i < 4; i++) {
+            corners[2 * i] = region[0] + corners[2 * i] * scaleX;
+            corners[2 * i + 1] = region[1] + corners[2 * i + 1] * scaleY;
+        }
+    }
+
+    int[] getRegion() {
+        return region;
+    }
+
+    void setFrameSize(int frameWidth, int frameHeight) {
+        this.frameWidth = frameWidth;
+        this.frameHeight = frameHeight;
+    }
+}
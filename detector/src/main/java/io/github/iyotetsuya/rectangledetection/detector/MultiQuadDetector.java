@@ -0,0 +1,17 @@
+package io.github.iyotetsuya.rectangledetection.detector;
+
+/**
+ * {@link QuadDetector} that can also return every quad in the image, for scenes with several
+ * documents, in a single pass.
+ */
+public interface MultiQuadDetector extends QuadDetector {
+    /**
+     * Finds the quads in an image, drops those that overlap a better one, and keeps the best
+     * {@link QuadList#capacity()} of the rest.
+     *
+     * @param gray  row-major 8-bit image, at least {@code width * height} bytes
+     * @param quads cleared, then receives the quads in image coordinates, best first
+     * @return the number of quads found
+     */
+    int detectAll(byte[] gray, int width, int height, QuadList quads);
+}
@@ -0,0 +1,209 @@
+package io.github.iyotetsuya.rectangledetection.detector;
+
+/**
+ * Polygon measurements and Douglas-Peucker simplification on interleaved {@code x, y} point
+ * arrays, mirroring {@code contourArea}, {@code arcLength}, {@code approxPolyDP} and
+ * {@code isContourConvex} for closed curves.
+ */
+public final class PolygonApprox {
+    private int[] stack = new int[64];
+    private int[] kept = new int[64];
+
+    /**
+     * Absolute area of the closed polygon of {@code count} points starting at point {@code start}.
+     */
+    public static double area(int[] points, int start, int count) {
+        long twiceArea = 0;
+        int base = 2 * start;
+        int prevX = points[base + 2 * (count - 1)];
+        int prevY = points[base + 2 * (count - 1) + 1];
+        for (int i = 0; i < count; i++) {
+            int x = points[base + 2 * i];
+            int y = points[base + 2 * i + 1];
+            twiceArea += (long) prevX * y - (long) x * prevY;
+            prevX = x;
+            prevY = y;
+        }
+        return Math.abs(twiceArea) / 2.0;
+    }
+
+    /**
+     * Perimeter of the closed polygon of {@code count} points starting at point {@code start}.
+     */
+    public static double arcLength(int[] points, int start, int count) {
+        double length = 0;
+        int base = 2 * start;
+        int prevX = points[base + 2 * (count - 1)];
+        int prevY = points[base + 2 * (count - 1) + 1];
+        for (int i = 0; i < count; i++) {
+            int x = points[base + 2 * i];
+            int y = points[base + 2 * i + 1];
+            double dx = x - prevX;
+            double dy = y - prevY;
+            length += Math.sqrt(dx * dx + dy * dy);
+            prevX = x;
+            prevY = y;
+        }
+        return length;
+    }
+
+    /**
+     * Simplifies the closed curve of {@code count} points starting at point {@code start} so that
+     * no dropped point is farther than {@code epsilon} from the result, and writes the kept
+     * points to {@code out} as interleaved {@code x, y}.
+     *
+     * @return the number of points written, or -1 if {@code out} is too small
+     */
+    public int approximate(int[] points, int start, int count, double epsilon, int[] out) {
+        if (count <= 2) {
+            return copy(points, start, count, out);
+        }
+        int base = 2 * start;
+        // Split the closed curve at two points far apart from each other, as OpenCV does
+        int first = 0;
+        int second = 0;
+        for (int iteration = 0; iteration < 3; iteration++) {
+            int from = iteration % 2 == 0 ? first : second;
+            long maxDistance = -1;
+            int farthest = from;
+            int fx = points[base + 2 * from];
+            int fy = points[base + 2 * from + 1];
+            for (int i = 0; i < count; i++) {
+                long dx = points[base + 2 * i] - fx;
+                long dy = points[base + 2 * i + 1] - fy;
+                long distance = dx * dx + dy * dy;
+                if (distance > maxDistance) {
+                    maxDistance = distance;
+                    farthest = i;
+                }
+            }
+            if (iteration % 2 == 0) {
+                second = farthest;
+            } else {
+                first = farthest;
+            }
+        }
+        if (first == second) {
+            return copy(points, start + first, 1, out);
+        }
+
+        if (stack.length < 2 * count + 4) {
+            stack = new int[2 * count + 4];
+        }
+        if (kept.length < count) {
+            kept = new int[count];
+        }
+        int keptCount = 0;
+        int top = 0;
+        stack[top++] = second;
+        stack[top++] = first;
+        stack[top++] = first;
+        stack[top++] = second;
+        while (top > 0) {
+            int end = stack[--top];
+            int begin = stack[--top];
+            int span = (end - begin + count) % count;
+            int bx = points[base + 2 * begin];
+            int by = points[base + 2 * begin + 1];
+            double dx = points[base + 2 * end] - bx;
+            double dy = points[base + 2 * end + 1] - by;
+            double maxDistance = 0;
+            int farthest = -1;
+            for (int k = 1; k < span; k++) {
+                int i = (begin + k) % count;
+                double cross = Math.abs((points[base + 2 * i + 1] - by) * dx
+                        - (points[base + 2 * i] - bx) * dy);
+                if (cross > maxDistance) {
+                    maxDistance = cross;
+                    farthest = i;
+                }
+            }
+            if (farthest >= 0 && maxDistance * maxDistance > epsilon * epsilon * (dx * dx + dy * dy)) {
+                stack[top++] = farthest;
+                stack[top++] = end;
+                stack[top++] = begin;
+                stack[top++] = farthest;
+            } else {
+                kept[keptCount++] = begin;
+            }
+        }
+
+        // Drop kept points that ended up on a straight line between their neighbours
+        int written = 0;
+        for (int i = 0; i < keptCount; i++) {
+            int prev = written > 0 ? kept[written - 1] : kept[keptCount - 1];
+            int current = kept[i];
+            int next = kept[(i + 1) % keptCount];
+            if (keptCount - (i - written) > 3 && isWithin(points, base, prev, current, next, epsilon)) {
+                continue;
+            }
+            kept[written++] = current;
+        }
+        if (2 * written > out.length) {
+            return -1;
+        }
+        for (int i = 0; i < written; i++) {
+            out[2 * i] = points[base + 2 * kept[i]];
+            out[2 * i + 1] = points[base + 2 * kept[i] + 1];
+        }
+        return written;
+    }
+
+    /**
+     * Returns whether the polygon of {@code count} points in {@code polygon} turns the same way at
+     * every vertex.
+     */
+    public static boolean isConvex(int[] polygon, int count) {
+        if (count < 3) {
+            return false;
+        }
+        int sign = 0;
+        for (int i = 0; i < count; i++) {
+            int a = i;
+            int b = (i + 1) % count;
+            int c = (i + 2) % count;
+            long cross = (long) (polygon[2 * b] - polygon[2 * a]) * (polygon[2 * c + 1] - polygon[2 * b + 1])
+                    - (long) (polygon[2 * b + 1] - polygon[2 * a + 1]) * (polygon[2 * c] - polygon[2 * b]);
+            if (cross != 0) {
+                int turn = cross > 0 ? 1 : -1;
+                if (sign != 0 && turn != sign) {
+                    return false;
+                }
+                sign = turn;
+            }
+        }
+        return sign != 0;
+    }
+
+    /**
+     * Cosine of the angle at vertex {@code vertex} of the polygon of {@code count} points.
+     */
+    public static double cosine(int[] polygon, int count, int vertex) {
+        int prev = (vertex + count - 1) % count;
+        int next = (vertex + 1) % count;
+        double dx1 = polygon[2 * next] - polygon[2 * vertex];
+        double dy1 = polygon[2 * next + 1] - polygon[2 * vertex + 1];
+        double dx2 = polygon[2 * prev] - polygon[2 * vertex];
+        double dy2 = polygon[2 * prev + 1] - polygon[2 * vertex + 1];
+        return (dx1 * dx2 + dy1 * dy2) / Math.sqrt((dx1 * dx1 + dy1 * dy1) * (dx2 * dx2 + dy2 * dy2) + 1e-10);
+    }
+
+    private static boolean isWithin(int[] points, int base, int prev, int current, int next,
+                                    double epsilon) {
+        double px = points[base + 2 * prev];
+        double py = points[base + 2 * prev + 1];
+        double dx = points[base + 2 * next] - px;
+        double dy = points[base + 2 * next + 1] - py;
+        double cross = Math.abs((points[base + 2 * current + 1] - py) * dx
+                - (points[base + 2 * current] - px) * dy);
+        return cross * cross <= epsilon * epsilon * (dx * dx + dy * dy);
+    }
+
+    private static int copy(int[] points, int start, int count, int[] out) {
+        if (2 * count > out.length) {
+            return -1;
+        }
+        System.arraycopy(points, 2 * start, out, 0, 2 * count);
+        return count;
+    }
+}
@@ -0,0 +1,18 @@
+package io.github.iyotetsuya.rectangledetection.detector;
+
+/**
+ * Finds one convex, roughly rectangular quadrilateral in an 8-bit grayscale image.
+ *
+ * <p>Implementations keep their scratch buffers between calls and are not thread-safe; use one
+ * instance per thread.</p>
+ */
+public interface QuadDetector {
+    /**
+     * @param gray    row-major 8-bit image, at least {@code width * height} bytes
+     * @param width   image width
+     * @param height  image height
+     * @param corners receives the four corners as {@code x0, y0, ..., x3, y3} in image coordinates
+     * @return true if a quad was found and written to {@code corners}
+     */
+    boolean detect(byte[] gray, int width, int height, float[] corners);
+}
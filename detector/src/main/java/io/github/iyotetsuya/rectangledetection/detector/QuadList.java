@@ -0,0 +1,142 @@
+package io.github.iyotetsuya.rectangledetection.detector;
+
+/**
+ * Bounded, reusable list of quads ranked by score, best first, as filled by
+ * {@link MultiQuadDetector#detectAll}.
+ *
+ * <p>Each entry carries the parts its score is made of: the quad's area relative to the image,
+ * the quality of its angles, from 0 for the most skewed quad accepted to 1 for right angles, and
+ * its edge support, the fraction of its outline that lies on an edge of the image. The score is
+ * their product.</p>
+ */
+public final class QuadList {
+    private final float[] corners;
+    private final float[] areas;
+    private final float[] angleQualities;
+    private final float[] edgeSupports;
+    private final float[] scores;
+    private int size;
+
+    /**
+     * @param capacity the most quads the list keeps
+     */
+    public QuadList(int capacity) {
+        corners = new float[8 * capacity];
+        areas = new float[capacity];
+        angleQualities = new float[capacity];
+        edgeSupports = new float[capacity];
+        scores = new float[capacity];
+    }
+
+    public int capacity() {
+        return scores.length;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Copies the corners of entry {@code index} to {@code out} as {@code x0, y0, ..., x3, y3}.
+     */
+    public void getCorners(int index, float[] out) {
+        checkIndex(index);
+        System.arraycopy(corners, 8 * index, out, 0, 8);
+    }
+
+    /**
+     * Area of the quad relative to the image it was found in.
+     */
+    public float getArea(int index) {
+        checkIndex(index);
+        return areas[index];
+    }
+
+    public float getAngleQuality(int index) {
+        checkIndex(index);
+        return angleQualities[index];
+    }
+
+    public float getEdgeSupport(int index) {
+        checkIndex(index);
+        return edgeSupports[index];
+    }
+
+    public float getScore(int index) {
+        checkIndex(index);
+        return scores[index];
+    }
+
+    /**
+     * Appends a quad, which must not score higher than the last one.
+     *
+     * @return false if the list is full
+     */
+    boolean add(float[] quad, int offset, float area, float angleQuality, float edgeSupport) {
+        if (size == scores.length) {
+            return false;
+        }
+        System.arraycopy(quad, offset, corners, 8 * size, 8);
+        areas[size] = area;
+        angleQualities[size] = angleQuality;
+        edgeSupports[size] = edgeSupport;
+        scores[size] = area * angleQuality * edgeSupport;
+        size++;
+        return true;
+    }
+
+    void setCorners(int index, float[] quad) {
+        checkIndex(index);
+        System.arraycopy(quad, 0, corners, 8 * index, 8);
+    }
+
+    /**
+     * Returns the largest intersection over union between the bounding box of {@code quad} and
+     * that of any entry.
+     */
+    float maxOverlap(float[] quad, int offset) {
+        float max = 0;
+        for (int i = 0; i < size; i++) {
+            max = Math.max(max, boxOverlap(corners, 8 * i, quad, offset));
+        }
+        return max;
+    }
+
+    /**
+     * Intersection over union of the bounding boxes of two quads. Boxes are a loose fit for
+     * rotated quads, but duplicates of one document overlap almost entirely either way, while
+     * documents side by side barely do.
+     */
+    static float boxOverlap(float[] a, int aOffset, float[] b, int bOffset) {
+        float aMinX = Float.MAX_VALUE, aMinY = Float.MAX_VALUE, aMaxX = -Float.MAX_VALUE, aMaxY = -Float.MAX_VALUE;
+        float bMinX = Float.MAX_VALUE, bMinY = Float.MAX_VALUE, bMaxX = -Float.MAX_VALUE, bMaxY = -Float.MAX_VALUE;
+        for (int i = 0; i < 4; i++) {
+            aMinX = Math.min(aMinX, a[aOffset + 2 * i]);
+            aMaxX = Math.max(aMaxX, a[aOffset + 2 * i]);
+            aMinY = Math.min(aMinY, a[aOffset + 2 * i + 1]);
+            aMaxY = Math.max(aMaxY, a[aOffset + 2 * i + 1]);
+            bMinX = Math.min(bMinX, b[bOffset + 2 * i]);
+            bMaxX = Math.max(bMaxX, b[bOffset + 2 * i]);
+            bMinY = Math.min(bMinY, b[bOffset + 2 * i + 1]);
+            bMaxY = Math.max(bMaxY, b[bOffset + 2 * i + 1]);
+        }
+        float intersectionWidth = Math.min(aMaxX, bMaxX) - Math.max(aMinX, bMinX);
+        float intersectionHeight = Math.min(aMaxY, bMaxY) - Math.max(aMinY, bMinY);
+        if (intersectionWidth <= 0 || intersectionHeight <= 0) {
+            return 0;
+        }
+        float intersection = intersectionWidth * intersectionHeight;
+        float union = (aMaxX - aMinX) * (aMaxY - aMinY) + (bMaxX - bMinX) * (bMaxY - bMinY) - intersection;
+        return intersection / union;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index " + index + ", size " + size);
+        }
+    }
+}
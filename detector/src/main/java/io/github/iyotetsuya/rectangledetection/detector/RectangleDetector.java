@@ -0,0 +1,149 @@
+package io.github.iyotetsuya.rectangledetection.detector;
+
+/**
+ * Finds a rectangle in a full-size frame: decimates the luma plane to the working size, runs a
+ * {@link QuadDetector} on it and scales the corners back to frame coordinates.
+ *
+ * <p>With a {@link RegionOfInterest}, only the region around the previous quad is decimated and
+ * searched, at the scale the whole frame would get, so the work shrinks with the quad; frames
+ * where that finds nothing make the next one search the whole frame again.</p>
+ *
+ * <p>With a {@link CornerRefiner}, the corners are then refined on the full-resolution frame, so
+ * detection can run on a smaller working image without losing precision.</p>
+ *
+ * <p>Each instance owns its working image and its {@link QuadDetector}, and is not thread-safe.
+ * Use one instance per thread, for example through {@link DetectorPool}. The two halves,
+ * {@link #decimate(byte[], int, int, LumaFrame)} and
+ * {@link #detect(LumaFrame, byte[], float[])}, may run on two different threads, as long as each
+ * of them runs on one thread at a time.</p>
+ */
+public final class RectangleDetector {
+    private final QuadDetector detector;
+    private final float maxWidth;
+    private final float maxHeight;
+    private final RegionOfInterest regionOfInterest;
+    private final LumaFrame frame = new LumaFrame();
+    private final float[] quad = new float[8];
+    private CornerRefiner cornerRefiner;
+
+    /**
+     * @param detector  detector for this instance only
+     * @param maxWidth  maximum width of the working image
+     * @param maxHeight maximum height of the working image
+     */
+    public RectangleDetector(QuadDetector detector, float maxWidth, float maxHeight) {
+        this(detector, maxWidth, maxHeight, null);
+    }
+
+    /**
+     * @param regionOfInterest where to search next; may be shared by several instances, or null
+     *                         to always search the whole frame
+     */
+    public RectangleDetector(QuadDetector detector, float maxWidth, float maxHeight,
+                             RegionOfInterest regionOfInterest) {
+        this.detector = detector;
+        this.maxWidth = maxWidth;
+        this.maxHeight = maxHeight;
+        this.regionOfInterest = regionOfInterest;
+    }
+
+    /**
+     * @param data    NV21 frame, or any 8-bit image whose first {@code width * height} bytes are
+     *                the luma plane
+     * @param corners receives the four corners as {@code x0, y0, ..., x3, y3} in frame coordinates
+     * @return true if a quad was found and written to {@code corners}
+     */
+    public boolean detect(byte[] data, int width, int height, float[] corners) {
+        decimate(data, width, height, frame);
+        return detect(frame, data, corners);
+    }
+
+    /**
+     * Sets the refiner applied to the corners of every quad found, or null for none.
+     */
+    public void setCornerRefiner(CornerRefiner cornerRefiner) {
+        this.cornerRefiner = cornerRefiner;
+    }
+
+    /**
+     * Decimates the part of the frame to search into {@code dst}.
+     */
+    public void decimate(byte[] data, int width, int height, LumaFrame dst) {
+        int[] region = dst.getRegion();
+        if (regionOfInterest == null) {
+            region[0] = 0;
+            region[1] = 0;
+            region[2] = width;
+            region[3] = height;
+        } else {
+            regionOfInterest.get(width, height, region);
+        }
+        dst.setFrameSize(width, height);
+        LumaDecimator.decimateRegion(data, width, region[0], region[1], region[2], region[3],
+                LumaDecimator.scaleRatio(width, height, maxWidth, maxHeight), dst.getImage());
+    }
+
+    /**
+     * Searches a frame decimated by {@link #decimate(byte[], int, int, LumaFrame)}.
+     *
+     * @param data    the frame it was decimated from, for the {@link CornerRefiner}; may be null
+     *                to skip refinement
+     * @param corners receives the four corners as {@code x0, y0, ..., x3, y3} in frame coordinates
+     * @return true if a quad was found and written to {@code corners}
+     */
+    public boolean detect(LumaFrame frame, byte[] data, float[] corners) {
+        GrayImage image = frame.getImage();
+        boolean found = detector.detect(image.getData(), image.getWidth(), image.getHeight(), corners);
+        if (found) {
+            frame.toFrameCoordinates(corners);
+            if (cornerRefiner != null && data != null) {
+                long span = Tracer.begin();
+                // A corner found on the working image can be off by about a working pixel or two
+                cornerRefiner.refine(data, frame.getFrameWidth(), frame.getFrameHeight(), corners,
+                        2 * frame.getScale());
+                Tracer.end("refineCorners", span);
+            }
+        }
+        if (regionOfInterest != null) {
+            regionOfInterest.update(found, corners);
+        }
+        return found;
+    }
+
+    /**
+     * Searches a frame decimated by {@link #decimate(byte[], int, int, LumaFrame)} for every quad,
+     * which needs a {@link MultiQuadDetector}. The {@link RegionOfInterest} only follows one quad
+     * and is left alone.
+     *
+     * @param data  the frame it was decimated from, for the {@link CornerRefiner}; may be null to
+     *              skip refinement
+     * @param quads cleared, then receives the quads in frame coordinates, best first
+     * @return the number of quads found
+     * @throws IllegalStateException if the detector is not a {@link MultiQuadDetector}
+     */
+    public int detectAll(LumaFrame frame, byte[] data, QuadList quads) {
+        if (!(detector instanceof MultiQuadDetector)) {
+            throw new IllegalStateException(detector + " only finds one quad");
+        }
+        GrayImage image = frame.getImage();
+        int count = ((MultiQuadDetector) detector).detectAll(image.getData(), image.getWidth(),
+                image.getHeight(), quads);
+        boolean refine = cornerRefiner != null && data != null;
+        long span = refine ? Tracer.begin() : 0;
+        for (int i = 0; i < count; i++) {
+            quads.getCorners(i, quad);
+            frame.toFrameCoordinates(quad);
+            if (refine) {
+                cornerRefiner.refine(data, frame.getFrameWidth(), frame.getFrameHeight(), quad,
+                        2 * frame.getScale());
+            }
+            quads.setCorners(i, quad);
+        }
+        Tracer.end("refineCorners", span);
+        return count;
+    }
+
+    public QuadDetector getQuadDetector() {
+        return detector;
+    }
+}
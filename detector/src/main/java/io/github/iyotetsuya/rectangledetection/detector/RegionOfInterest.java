@@ -0,0 +1,75 @@
+package io.github.iyotetsuya.rectangledetection.detector;
+
+/**
+ * Remembers where the last quad was found, so the next frame only needs to be searched around
+ * it: the quad's bounding box, expanded by {@code margin} of its size on every side. After a
+ * frame without a quad the whole frame is searched again.
+ *
+ * <p>All methods are thread-safe.</p>
+ */
+public final class RegionOfInterest {
+    private final float margin;
+    private boolean valid;
+    private float left;
+    private float top;
+    private float right;
+    private float bottom;
+
+    /**
+     * @param margin how much of the quad's width and height to add on each side
+     */
+    public RegionOfInterest(float margin) {
+        this.margin = margin;
+    }
+
+    /**
+     * Records the outcome of a detection; {@code corners} are in frame coordinates.
+     */
+    public synchronized void update(boolean found, float[] corners) {
+        valid = found;
+        if (!found) {
+            return;
+        }
+        left = right = corners[0];
+        top = bottom = corners[1];
+        for (int i = 1; i < 4; i++) {
+            left = Math.min(left, corners[2 * i]);
+            right = Math.max(right, corners[2 * i]);
+            top = Math.min(top, corners[2 * i + 1]);
+            bottom = Math.max(bottom, corners[2 * i + 1]);
+        }
+    }
+
+    public synchronized void reset() {
+        valid = false;
+    }
+
+    /**
+     * Writes the region of a {@code width} x {@code height} frame to search next to
+     * {@code region} as {@code left, top, width, height}.
+     *
+     * @return false if that is the whole frame
+     */
+    public synchronized boolean get(int width, int height, int[] region) {
+        if (valid) {
+            float marginX = (right - left) * margin;
+            float marginY = (bottom - top) * margin;
+            int regionLeft = Math.max(0, (int) (left - marginX));
+            int regionTop = Math.max(0, (int) (top - marginY));
+            int regionRight = Math.min(width, (int) Math.ceil(right + marginX));
+            int regionBottom = Math.min(height, (int) Math.ceil(bottom + marginY));
+            if (regionRight - regionLeft < width || regionBottom - regionTop < height) {
+                region[0] = regionLeft;
+                region[1] = regionTop;
+                region[2] = Math.max(1, regionRight - regionLeft);
+                region[3] = Math.max(1, regionBottom - regionTop);
+                return true;
+            }
+        }
+        region[0] = 0;
+        region[1] = 0;
+        region[2] = width;
+        region[3] = height;
+        return false;
+    }
+}
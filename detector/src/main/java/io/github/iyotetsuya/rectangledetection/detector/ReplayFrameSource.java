@@ -0,0 +1,228 @@
+package io.github.iyotetsuya.rectangledetection.detector;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * {@link FrameSource} that plays back a file written by {@link FrameRecorder}, so detection can
+ * be run and measured without a camera.
+ *
+ * <p>The file is memory-mapped a chunk of frames at a time, so recordings can be larger than a
+ * single mapping allows, and each frame is copied from the mapping into one of a fixed number of
+ * buffers, which go back to the source when the frame is released, as with the camera's preview
+ * buffers. Frames are delivered in order on a thread of the source's own; the replay ends early
+ * if a chunk cannot be mapped.</p>
+ *
+ * <p>With {@link Pacing#REAL_TIME}, each frame is delivered at its recorded offset from the first
+ * one, and frames that come due while every buffer is held are dropped, as the camera would. With
+ * {@link Pacing#AS_FAST_AS_POSSIBLE}, each frame is delivered as soon as a buffer is free, so every
+ * frame is delivered and a run depends only on the file.</p>
+ */
+public final class ReplayFrameSource implements FrameSource {
+    // Frames are mapped in chunks of at most this size, or one frame if larger
+    private static final long CHUNK_SIZE = 64L << 20;
+
+    public enum Pacing {
+        REAL_TIME,
+        AS_FAST_AS_POSSIBLE
+    }
+
+    private final FileChannel channel;
+    private final Pacing pacing;
+    private final int width;
+    private final int height;
+    private final int frameSize;
+    private final long recordSize;
+    private final int frameCount;
+    private final int framesPerChunk;
+    private final BlockingQueue<byte[]> freeBuffers;
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile Thread thread;
+    private volatile boolean closed;
+
+    /**
+     * @param bufferCount number of frames that can be held at once
+     * @throws IOException if the file cannot be read or is not a recording
+     */
+    public ReplayFrameSource(File file, Pacing pacing, int bufferCount) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        channel = randomAccessFile.getChannel();
+        try {
+            long size = channel.size();
+            if (size < FrameRecorder.HEADER_SIZE) {
+                throw new IOException("not a frame recording: " + file);
+            }
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, FrameRecorder.HEADER_SIZE);
+            if (header.getInt(0) != FrameRecorder.MAGIC) {
+                throw new IOException("not a frame recording: " + file);
+            }
+            if (header.getInt(4) != FrameRecorder.VERSION) {
+                throw new IOException("unsupported recording version " + header.getInt(4) + ": " + file);
+            }
+            this.width = header.getInt(8);
+            this.height = header.getInt(12);
+            if (width <= 0 || height <= 0 || (long) width * height * 3 / 2 > Integer.MAX_VALUE) {
+                throw new IOException("invalid frame size " + width + "x" + height + ": " + file);
+            }
+            this.frameSize = FrameRecorder.frameSize(width, height);
+            this.recordSize = FrameRecorder.TIMESTAMP_SIZE + frameSize;
+            long frames = (size - FrameRecorder.HEADER_SIZE) / recordSize;
+            if (FrameRecorder.HEADER_SIZE + frames * recordSize != size) {
+                throw new IOException("recording ends in the middle of a frame: " + file);
+            }
+            if (frames > Integer.MAX_VALUE) {
+                throw new IOException("too many frames: " + file);
+            }
+            this.frameCount = (int) frames;
+        } catch (IOException e) {
+            randomAccessFile.close();
+            throw e;
+        }
+        this.pacing = pacing;
+        this.framesPerChunk = (int) Math.max(1, CHUNK_SIZE / recordSize);
+        this.freeBuffers = new ArrayBlockingQueue<>(bufferCount);
+        for (int i = 0; i < bufferCount; i++) {
+            freeBuffers.add(new byte[frameSize]);
+        }
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    public long getDeliveredFrames() {
+        return delivered.get();
+    }
+
+    /**
+     * Returns how many frames were skipped because every buffer was held when they came due.
+     */
+    public long getDroppedFrames() {
+        return dropped.get();
+    }
+
+    @Override
+    public void start(Listener listener) {
+        if (thread != null) {
+            throw new IllegalStateException("already started");
+        }
+        Thread thread = new Thread(() -> replay(listener), "replay");
+        thread.setDaemon(true);
+        this.thread = thread;
+        thread.start();
+    }
+
+    /**
+     * Waits until every frame has been delivered or dropped, or the source is closed.
+     */
+    public void awaitEnd() throws InterruptedException {
+        Thread thread = this.thread;
+        if (thread != null) {
+            thread.join();
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        Thread thread = this.thread;
+        if (thread != null && thread != Thread.currentThread()) {
+            thread.interrupt();
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // Nothing was written
+        }
+    }
+
+    private void replay(Listener listener) {
+        MappedByteBuffer chunk = null;
+        int chunkIndex = -1;
+        long startNanos = System.nanoTime();
+        long firstTimestamp = 0;
+        for (int i = 0; i < frameCount && !closed; i++) {
+            if (i / framesPerChunk != chunkIndex) {
+                chunkIndex = i / framesPerChunk;
+                try {
+                    chunk = mapChunk(chunkIndex);
+                } catch (IOException e) {
+                    return;
+                }
+            }
+            int offset = (int) ((i % framesPerChunk) * recordSize);
+            long timestamp;
+            byte[] data;
+            if (pacing == Pacing.REAL_TIME) {
+                if (i == 0) {
+                    firstTimestamp = chunk.getLong(offset);
+                }
+                timestamp = startNanos + chunk.getLong(offset) - firstTimestamp;
+                if (!sleepUntil(timestamp)) {
+                    return;
+                }
+                data = freeBuffers.poll();
+                if (data == null) {
+                    dropped.incrementAndGet();
+                    continue;
+                }
+            } else {
+                try {
+                    data = freeBuffers.take();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                timestamp = System.nanoTime();
+            }
+            chunk.position(offset + FrameRecorder.TIMESTAMP_SIZE);
+            chunk.get(data, 0, frameSize);
+            delivered.incrementAndGet();
+            listener.onFrame(new Frame(data, width, height, timestamp, freeBuffers::offer));
+        }
+    }
+
+    /**
+     * Maps the records of chunk {@code index}.
+     */
+    private MappedByteBuffer mapChunk(int index) throws IOException {
+        long first = (long) index * framesPerChunk;
+        long frames = Math.min(framesPerChunk, frameCount - first);
+        return channel.map(FileChannel.MapMode.READ_ONLY, FrameRecorder.HEADER_SIZE + first * recordSize,
+                frames * recordSize);
+    }
+
+    /**
+     * @return false if interrupted first
+     */
+    private static boolean sleepUntil(long deadlineNanos) {
+        long remaining;
+        while ((remaining = deadlineNanos - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+            if (Thread.interrupted()) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,170 @@
+package io.github.iyotetsuya.rectangledetection.detector;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Process-wide recorder of timed spans, exported in the Chrome trace-event JSON format that
+ * Perfetto and chrome://tracing open.
+ *
+ * <pre>
+ * long span = Tracer.begin();
+ * ...
+ * Tracer.end("getEdge", span);
+ * </pre>
+ *
+ * <p>Spans go into a fixed-size ring buffer without locking; when it is full the oldest spans are
+ * overwritten. While tracing is disabled, {@link #begin()} is a single volatile read and
+ * {@link #end(String, long)} returns immediately. Span names should be constants, so recording
+ * does not allocate.</p>
+ */
+public final class Tracer {
+    private static final int CAPACITY = 1 << 14;
+    private static final int MASK = CAPACITY - 1;
+    private static final long DISABLED = 0L;
+
+    // Slot fields are atomic so that a reader that sees the same index in published before and
+    // after reading them also saw the values written with that index, not a later writer's
+    private static final AtomicReferenceArray<String> names = new AtomicReferenceArray<>(CAPACITY);
+    private static final AtomicLongArray starts = new AtomicLongArray(CAPACITY);
+    private static final AtomicLongArray durations = new AtomicLongArray(CAPACITY);
+    private static final AtomicLongArray threadIds = new AtomicLongArray(CAPACITY);
+    // Index of the span published in each slot, or -1 while it is being written
+    private static final AtomicLongArray published = new AtomicLongArray(CAPACITY);
+    private static final AtomicLong cursor = new AtomicLong();
+    private static final Map<Long, String> threadNames = new ConcurrentHashMap<>();
+    private static final ThreadLocal<Boolean> threadRegistered = new ThreadLocal<>();
+
+    private static volatile boolean enabled;
+
+    static {
+        for (int i = 0; i < CAPACITY; i++) {
+            published.set(i, -1);
+        }
+    }
+
+    private Tracer() {
+    }
+
+    public static void setEnabled(boolean enabled) {
+        Tracer.enabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Starts a span and returns the token to pass to {@link #end(String, long)}.
+     */
+    public static long begin() {
+        return enabled ? System.nanoTime() : DISABLED;
+    }
+
+    /**
+     * Records the span started by {@code token} under {@code name}.
+     */
+    public static void end(String name, long token) {
+        if (token == DISABLED) {
+            return;
+        }
+        long now = System.nanoTime();
+        Thread thread = Thread.currentThread();
+        if (threadRegistered.get() == null) {
+            threadRegistered.set(Boolean.TRUE);
+            threadNames.put(thread.getId(), thread.getName());
+        }
+        long index = cursor.getAndIncrement();
+        int slot = (int) (index & MASK);
+        published.set(slot, -1);
+        names.set(slot, name);
+        starts.set(slot, token);
+        durations.set(slot, now - token);
+        threadIds.set(slot, thread.getId());
+        published.set(slot, index);
+    }
+
+    /**
+     * Returns the number of spans recorded since the last {@link #clear()}, including those that
+     * have been overwritten.
+     */
+    public static long getRecordedCount() {
+        return cursor.get();
+    }
+
+    public static void clear() {
+        long end = cursor.get();
+        for (long index = Math.max(0, end - CAPACITY); index < end; index++) {
+            published.set((int) (index & MASK), -1);
+        }
+        cursor.set(0);
+    }
+
+    /**
+     * Writes the spans currently in the buffer as a Chrome trace-event JSON document. Spans being
+     * recorded concurrently may be left out.
+     *
+     * @return the number of spans written
+     */
+    public static int writeChromeTrace(Appendable out) throws IOException {
+        out.append("{\"traceEvents\":[");
+        int written = 0;
+        for (Map.Entry<Long, String> thread : threadNames.entrySet()) {
+            if (written > 0) {
+                out.append(',');
+            }
+            out.append("{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":")
+                    .append(String.valueOf(thread.getKey()))
+                    .append(",\"args\":{\"name\":\"");
+            appendEscaped(out, thread.getValue());
+            out.append("\"}}");
+            written++;
+        }
+        int spans = 0;
+        long end = cursor.get();
+        for (long index = Math.max(0, end - CAPACITY); index < end; index++) {
+            int slot = (int) (index & MASK);
+            if (published.get(slot) != index) {
+                continue;
+            }
+            String name = names.get(slot);
+            long start = starts.get(slot);
+            long duration = durations.get(slot);
+            long threadId = threadIds.get(slot);
+            if (published.get(slot) != index) {
+                continue;
+            }
+            if (written > 0) {
+                out.append(',');
+            }
+            out.append("{\"name\":\"");
+            appendEscaped(out, name);
+            out.append("\",\"ph\":\"X\",\"pid\":1,\"tid\":").append(String.valueOf(threadId))
+                    .append(",\"ts\":").append(String.format(Locale.US, "%.3f", start / 1000.0))
+                    .append(",\"dur\":").append(String.format(Locale.US, "%.3f", duration / 1000.0))
+                    .append('}');
+            written++;
+            spans++;
+        }
+        out.append("]}");
+        return spans;
+    }
+
+    private static void appendEscaped(Appendable out, String value) throws IOException {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.append('\\').append(c);
+            } else if (c < 0x20) {
+                out.append(String.format(Locale.US, "\\u%04x", (int) c));
+            } else {
+                out.append(c);
+            }
+        }
+    }
+}
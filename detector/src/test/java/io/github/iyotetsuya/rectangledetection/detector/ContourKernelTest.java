@@ -0,0 +1,101 @@
+package io.github.iyotetsuya.rectangledetection.detector;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ContourKernelTest {
+    private static final int WIDTH = 400;
+    private static final int HEIGHT = 300;
+
+    @Test
+    public void findQuad_prefersLargestRectangle() {
+        ContourKernel kernel = new ContourKernel(4);
+        float[] corners = new float[8];
+        kernel.begin(WIDTH, HEIGHT);
+        kernel.offer(new int[]{10, 10, 110, 10, 110, 110, 10, 110}, 0, 4);
+        kernel.offer(new int[]{150, 20, 390, 20, 390, 280, 150, 280}, 0, 4);
+        kernel.offer(new int[]{0, 0, 2, 0, 2, 2, 0, 2}, 0, 4);
+
+        assertEquals(1, kernel.findQuad(corners));
+        assertArrayEquals(new float[]{150, 20, 390, 20, 390, 280, 150, 280}, corners, 0);
+    }
+
+    @Test
+    public void findQuad_rejectsSmallAndSkewedContours() {
+        ContourKernel kernel = new ContourKernel(4);
+        kernel.begin(WIDTH, HEIGHT);
+        // Below one percent of the image
+        kernel.offer(new int[]{10, 10, 40, 10, 40, 40, 10, 40}, 0, 4);
+        // Convex, but one corner is far from a right angle
+        kernel.offer(new int[]{100, 100, 300, 100, 200, 200, 100, 200}, 0, 4);
+        // A triangle
+        kernel.offer(new int[]{100, 100, 300, 100, 200, 250, 200, 250}, 0, 4);
+
+        assertEquals(-1, kernel.findQuad(new float[8]));
+    }
+
+    @Test
+    public void findQuad_onlySimplifiesLargestCandidates() {
+        ContourKernel kernel = new ContourKernel(1);
+        kernel.begin(WIDTH, HEIGHT);
+        kernel.offer(new int[]{10, 10, 110, 10, 110, 110, 10, 110}, 0, 4);
+        // Larger, but not a quad, and it takes the only candidate slot
+        kernel.offer(new int[]{50, 50, 350, 50, 200, 280}, 0, 3);
+        kernel.offer(new int[]{50, 50, 350, 50, 200, 280, 200, 280}, 0, 4);
+
+        assertEquals(-1, kernel.findQuad(new float[8]));
+    }
+
+    @Test
+    public void offer_readsContoursAtAnOffset() {
+        ContourKernel kernel = new ContourKernel(2);
+        float[] corners = new float[8];
+        int[] points = {0, 0, 5, 5, 20, 20, 220, 20, 220, 220, 20, 220};
+        kernel.begin(WIDTH, HEIGHT);
+        kernel.offer(points, 0, 2);
+        kernel.offer(points, 2, 4);
+
+        assertEquals(1, kernel.findQuad(corners));
+        assertArrayEquals(new float[]{20, 20, 220, 20, 220, 220, 20, 220}, corners, 0);
+    }
+
+    @Test
+    public void findQuads_ranksQuadsAndSuppressesDuplicates() {
+        ContourKernel kernel = new ContourKernel(4);
+        QuadList quads = new QuadList(4);
+        float[] corners = new float[8];
+        kernel.begin(WIDTH, HEIGHT);
+        kernel.offer(new int[]{10, 10, 110, 10, 110, 110, 10, 110}, 0, 4);
+        kernel.offer(new int[]{150, 20, 390, 20, 390, 280, 150, 280}, 0, 4);
+        // The inner edge of the same border
+        kernel.offer(new int[]{153, 23, 387, 23, 387, 277, 153, 277}, 0, 4);
+
+        assertEquals(2, kernel.findQuads(null, quads));
+        quads.getCorners(0, corners);
+        assertArrayEquals(new float[]{150, 20, 390, 20, 390, 280, 150, 280}, corners, 0);
+        assertEquals(240f * 260 / (WIDTH * HEIGHT), quads.getArea(0), 1e-6);
+        assertEquals(1, quads.getAngleQuality(0), 1e-6);
+        assertEquals(1, quads.getEdgeSupport(0), 0);
+        quads.getCorners(1, corners);
+        assertArrayEquals(new float[]{10, 10, 110, 10, 110, 110, 10, 110}, corners, 0);
+        assertTrue(quads.getScore(0) > quads.getScore(1));
+    }
+
+    @Test
+    public void findQuads_scoresEdgeSupport() {
+        ContourKernel kernel = new ContourKernel(4);
+        QuadList quads = new QuadList(1);
+        // Only the top and bottom sides of the square are on an edge
+        byte[] edges = new byte[WIDTH * HEIGHT];
+        for (int x = 100; x <= 200; x++) {
+            edges[100 * WIDTH + x] = 1;
+            edges[200 * WIDTH + x] = 1;
+        }
+        kernel.begin(WIDTH, HEIGHT);
+        kernel.offer(new int[]{100, 100, 200, 100, 200, 200, 100, 200}, 0, 4);
+
+        assertEquals(1, kernel.findQuads(edges, quads));
+        assertEquals(0.5, quads.getEdgeSupport(0), 0.05);
+    }
+}
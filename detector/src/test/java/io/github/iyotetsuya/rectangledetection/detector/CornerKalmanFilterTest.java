@@ -0,0 +1,75 @@
+package io.github.iyotetsuya.rectangledetection.detector;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CornerKalmanFilterTest {
+    private static final long MS = 1000000L;
+
+    @Test
+    public void orderCorners_startsTopLeftAndGoesClockwise() {
+        float[] corners = {300, 210, 20, 30, 10, 200, 310, 20};
+        CornerKalmanFilter.orderCorners(corners);
+        assertArrayEquals(new float[]{20, 30, 310, 20, 300, 210, 10, 200}, corners, 0);
+    }
+
+    @Test
+    public void predict_extrapolatesConstantVelocity() {
+        CornerKalmanFilter filter = new CornerKalmanFilter(500, 2, 500 * MS, 100);
+        float[] corners = new float[8];
+        // Detections at 10 Hz of a quad moving right at 100 units per second
+        for (int frame = 0; frame <= 10; frame++) {
+            float dx = frame * 10;
+            filter.update(new float[]{10 + dx, 10, 110 + dx, 10, 110 + dx, 90, 10 + dx, 90}, frame * 100 * MS);
+        }
+        assertTrue(filter.predict(1050 * MS, corners));
+        assertEquals(10 + 105, corners[0], 2);
+        assertEquals(10, corners[1], 2);
+        assertEquals(110 + 105, corners[2], 2);
+    }
+
+    @Test
+    public void update_fusesDetectionsAtTheirCaptureTimeAfterLaterPredictions() {
+        CornerKalmanFilter filter = new CornerKalmanFilter(500, 2, 500 * MS, 100);
+        float[] corners = new float[8];
+        // As drawn: every detection of the quad moving right at 100 units per second arrives
+        // 50 ms after capture, once predictions at display rate have gone past it
+        for (int frame = 0; frame <= 10; frame++) {
+            float dx = frame * 10;
+            filter.update(new float[]{10 + dx, 10, 110 + dx, 10, 110 + dx, 90, 10 + dx, 90}, frame * 100 * MS);
+            for (long t = frame * 100 + 50; t < frame * 100 + 150; t += 16) {
+                assertTrue(filter.predict(t * MS, corners));
+            }
+        }
+        // A predicted, lagging state would have pulled the velocity down and the quad behind
+        assertTrue(filter.predict(1050 * MS, corners));
+        assertEquals(10 + 105, corners[0], 2);
+        assertEquals(110 + 105, corners[2], 2);
+        assertTrue(filter.predict(1100 * MS, corners));
+        assertEquals(10 + 110, corners[0], 2);
+    }
+
+    @Test
+    public void update_restartsOnFarDetection() {
+        CornerKalmanFilter filter = new CornerKalmanFilter(500, 2, 500 * MS, 50);
+        float[] corners = new float[8];
+        filter.update(new float[]{0, 0, 100, 0, 100, 100, 0, 100}, 0);
+        filter.update(new float[]{500, 500, 600, 500, 600, 600, 500, 600}, 100 * MS);
+
+        assertTrue(filter.predict(100 * MS, corners));
+        assertArrayEquals(new float[]{500, 500, 600, 500, 600, 600, 500, 600}, corners, 0);
+    }
+
+    @Test
+    public void predict_stopsAfterTimeout() {
+        CornerKalmanFilter filter = new CornerKalmanFilter(500, 2, 300 * MS, 50);
+        float[] corners = new float[8];
+        assertFalse(filter.predict(0, corners));
+
+        filter.update(new float[]{0, 0, 100, 0, 100, 100, 0, 100}, 0);
+        assertTrue(filter.predict(200 * MS, corners));
+        assertFalse(filter.predict(400 * MS, corners));
+        assertFalse(filter.isTracking());
+    }
+}
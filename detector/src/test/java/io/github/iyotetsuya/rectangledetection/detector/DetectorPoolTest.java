@@ -0,0 +1,139 @@
+package io.github.iyotetsuya.rectangledetection.detector;
+
+import org.junit.Test;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class DetectorPoolTest {
+    private static final int WIDTH = 400;
+    private static final int HEIGHT = 300;
+    private static final float[] QUAD = {80, 60, 320, 50, 340, 240, 70, 250};
+
+    @Test
+    public void trySubmit_deliversInSubmissionOrder() throws Exception {
+        int frames = 40;
+        byte[] quad = JavaQuadDetectorTest.render(QUAD);
+        byte[] empty = new byte[WIDTH * HEIGHT];
+        List<Integer> delivered = Collections.synchronizedList(new ArrayList<>());
+        List<Boolean> found = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(frames);
+        DetectorPool<Integer> pool = new DetectorPool<>(4, frames, DetectorPoolTest::newDetector,
+                (frame, detection) -> {
+                    delivered.add(frame);
+                    found.add(detection.isFound());
+                    done.countDown();
+                });
+
+        for (int i = 0; i < frames; i++) {
+            assertTrue(pool.trySubmit(i, i % 2 == 0 ? quad : empty, WIDTH, HEIGHT));
+        }
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        pool.close();
+
+        for (int i = 0; i < frames; i++) {
+            assertEquals(Integer.valueOf(i), delivered.get(i));
+            assertEquals(i % 2 == 0, found.get(i));
+        }
+    }
+
+    @Test
+    public void trySubmit_refusesFramesBeyondMaxInFlight() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        DetectorPool<Integer> pool = new DetectorPool<>(1, 1,
+                () -> new RectangleDetector((gray, width, height, corners) -> {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return false;
+                }, WIDTH, HEIGHT), null);
+
+        byte[] data = new byte[WIDTH * HEIGHT];
+        assertTrue(pool.trySubmit(0, data, WIDTH, HEIGHT));
+        assertFalse(pool.trySubmit(1, data, WIDTH, HEIGHT));
+        release.countDown();
+        pool.close();
+        assertFalse(pool.trySubmit(2, data, WIDTH, HEIGHT));
+    }
+
+    @Test
+    public void detectAll_returnsFrameCoordinatesInInputOrder() throws Exception {
+        List<GrayImage> images = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            GrayImage image = new GrayImage();
+            image.reset(WIDTH, HEIGHT);
+            if (i % 3 == 0) {
+                byte[] quad = JavaQuadDetectorTest.render(QUAD);
+                System.arraycopy(quad, 0, image.getData(), 0, quad.length);
+            }
+            images.add(image);
+        }
+        DetectorPool<Void> pool = new DetectorPool<>(3, 1, () -> new RectangleDetector(
+                new JavaQuadDetector(), WIDTH / 2f, HEIGHT / 2f), null);
+
+        List<Detection> detections = pool.detectAll(images);
+        pool.close();
+
+        assertEquals(images.size(), detections.size());
+        for (int i = 0; i < detections.size(); i++) {
+            Detection detection = detections.get(i);
+            assertEquals(i, detection.getSequence());
+            assertEquals(i % 3 == 0, detection.isFound());
+        }
+        // Corners found at half size are scaled back to the input
+        float[] corners = detections.get(0).getCorners();
+        float maxX = 0;
+        for (int i = 0; i < 4; i++) {
+            maxX = Math.max(maxX, corners[2 * i]);
+        }
+        assertEquals(340, maxX, 6);
+    }
+
+    @Test
+    public void close_closesEachWorkersDetectorOnItsThread() throws Exception {
+        int threads = 3;
+        List<String> closedOn = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch closed = new CountDownLatch(threads);
+        class ClosingDetector implements QuadDetector, Closeable {
+            @Override
+            public boolean detect(byte[] gray, int width, int height, float[] corners) {
+                return false;
+            }
+
+            @Override
+            public void close() {
+                closedOn.add(Thread.currentThread().getName());
+                closed.countDown();
+            }
+        }
+        DetectorPool<Void> pool = new DetectorPool<>(threads, 1,
+                () -> new RectangleDetector(new ClosingDetector(), WIDTH, HEIGHT), null);
+        List<GrayImage> images = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            GrayImage image = new GrayImage();
+            image.reset(WIDTH, HEIGHT);
+            images.add(image);
+        }
+
+        pool.detectAll(images);
+        assertTrue(closedOn.isEmpty());
+        pool.close();
+
+        assertTrue(closed.await(10, TimeUnit.SECONDS));
+        for (String name : closedOn) {
+            assertTrue(name, name.startsWith("detector-"));
+        }
+    }
+
+    private static RectangleDetector newDetector() {
+        return new RectangleDetector(new JavaQuadDetector(), WIDTH, HEIGHT);
+    }
+}
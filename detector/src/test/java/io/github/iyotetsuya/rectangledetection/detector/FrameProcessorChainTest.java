@@ -0,0 +1,67 @@
+package io.github.iyotetsuya.rectangledetection.detector;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class FrameProcessorChainTest {
+    private static final int WIDTH = 400;
+    private static final int HEIGHT = 300;
+
+    @Test
+    public void process_runsEveryStepOnTheSameContext() {
+        RectangleDetector detector = new RectangleDetector(new JavaQuadDetector(), 200, 200);
+        List<String> steps = new ArrayList<>();
+        FrameProcessorChain chain = new FrameProcessorChain()
+                .add("decimate", context -> {
+                    steps.add("decimate");
+                    Frame frame = context.getFrame();
+                    detector.decimate(frame.getData(), frame.getWidth(), frame.getHeight(), context.getLuma());
+                    context.releaseFrame();
+                })
+                .add("detect", context -> {
+                    steps.add("detect");
+                    context.setFound(detector.detect(context.getLuma(), null, context.getCorners()));
+                });
+        FrameContext context = new FrameContext();
+        float[] quad = {80, 60, 320, 50, 340, 240, 70, 250};
+
+        context.reset(newFrame(JavaQuadDetectorTest.render(quad)));
+        chain.process(context);
+        assertEquals(2, chain.size());
+        assertTrue(context.isFound());
+        assertNull(context.getFrame());
+        // Frame coordinates, although detected at half size
+        float maxX = 0;
+        for (int i = 0; i < 4; i++) {
+            maxX = Math.max(maxX, context.getCorners()[2 * i]);
+        }
+        assertEquals(340, maxX, 6);
+
+        context.reset(newFrame(new byte[WIDTH * HEIGHT]));
+        chain.process(context);
+        assertFalse(context.isFound());
+        assertEquals(4, steps.size());
+        assertEquals("detect", steps.get(3));
+    }
+
+    @Test
+    public void releaseFrame_recyclesTheFrameOnceAndKeepsItsTimestamp() {
+        List<byte[]> recycled = new ArrayList<>();
+        FrameContext context = new FrameContext();
+        context.reset(new Frame(new byte[WIDTH * HEIGHT], WIDTH, HEIGHT, 42, recycled::add));
+
+        context.releaseFrame();
+        context.releaseFrame();
+        assertEquals(1, recycled.size());
+        assertNull(context.getFrame());
+        assertEquals(42, context.getTimestampNanos());
+    }
+
+    private static Frame newFrame(byte[] luma) {
+        return new Frame(luma, WIDTH, HEIGHT, 0, null);
+    }
+}
@@ -0,0 +1,98 @@
+package io.github.iyotetsuya.rectangledetection.detector;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class JavaQuadDetectorTest {
+    private static final int WIDTH = 400;
+    private static final int HEIGHT = 300;
+
+    @Test
+    public void detect_findsFilledQuad() {
+        float[] expected = {80, 60, 320, 50, 340, 240, 70, 250};
+        byte[] gray = render(expected);
+        float[] corners = new float[8];
+
+        assertTrue(new JavaQuadDetector().detect(gray, WIDTH, HEIGHT, corners));
+        for (int i = 0; i < 4; i++) {
+            assertTrue("corner " + i + " not found", nearestDistance(corners, expected[2 * i], expected[2 * i + 1]) < 3);
+        }
+    }
+
+    @Test
+    public void detect_rejectsEmptyImage() {
+        byte[] gray = new byte[WIDTH * HEIGHT];
+        assertFalse(new JavaQuadDetector().detect(gray, WIDTH, HEIGHT, new float[8]));
+    }
+
+    @Test
+    public void detectAll_findsEveryQuad() {
+        float[] left = {30, 40, 170, 50, 160, 250, 20, 240};
+        float[] right = {220, 60, 380, 60, 380, 200, 220, 200};
+        byte[] gray = render(left);
+        byte[] other = render(right);
+        for (int i = 0; i < gray.length; i++) {
+            gray[i] = (byte) Math.max(gray[i] & 0xff, other[i] & 0xff);
+        }
+        QuadList quads = new QuadList(4);
+        float[] corners = new float[8];
+
+        assertEquals(2, new JavaQuadDetector().detectAll(gray, WIDTH, HEIGHT, quads));
+        // The left quad is larger
+        quads.getCorners(0, corners);
+        assertTrue(nearestDistance(corners, left[0], left[1]) < 3);
+        quads.getCorners(1, corners);
+        assertTrue(nearestDistance(corners, right[0], right[1]) < 3);
+        assertTrue(quads.getEdgeSupport(1) > 0.9f);
+    }
+
+    @Test
+    public void trace_keepsOnlyOuterBorderCorners() {
+        byte[] binary = new byte[20 * 20];
+        // A hollow square with a filled square inside it
+        for (int y = 2; y < 18; y++) {
+            for (int x = 2; x < 18; x++) {
+                boolean ring = x < 4 || x > 15 || y < 4 || y > 15;
+                boolean inner = x >= 8 && x < 12 && y >= 8 && y < 12;
+                binary[y * 20 + x] = ring || inner ? (byte) 255 : 0;
+            }
+        }
+        ContourTracer tracer = new ContourTracer();
+
+        assertEquals(1, tracer.trace(binary, 20, 20));
+        assertEquals(4, tracer.getContourLength(0));
+        // Corners are pixel centres of the 16x16 ring
+        assertEquals(15 * 15, PolygonApprox.area(tracer.getPoints(), 0, 4), 1e-9);
+    }
+
+    static byte[] render(float[] quad) {
+        byte[] gray = new byte[WIDTH * HEIGHT];
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                gray[y * WIDTH + x] = (byte) (contains(quad, x, y) ? 200 : 40);
+            }
+        }
+        return gray;
+    }
+
+    private static boolean contains(float[] quad, float x, float y) {
+        boolean inside = false;
+        for (int i = 0, j = 3; i < 4; j = i++) {
+            float xi = quad[2 * i], yi = quad[2 * i + 1];
+            float xj = quad[2 * j], yj = quad[2 * j + 1];
+            if ((yi > y) != (yj > y) && x < (xj - xi) * (y - yi) / (yj - yi) + xi) {
+                inside = !inside;
+            }
+        }
+        return inside;
+    }
+
+    private static double nearestDistance(float[] corners, float x, float y) {
+        double nearest = Double.MAX_VALUE;
+        for (int i = 0; i < 4; i++) {
+            nearest = Math.min(nearest, Math.hypot(corners[2 * i] - x, corners[2 * i + 1] - y));
+        }
+        return nearest;
+    }
+}
@@ -0,0 +1,73 @@
+package io.github.iyotetsuya.rectangledetection.detector;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RectangleDetectorTest {
+    private static final int WIDTH = 400;
+    private static final int HEIGHT = 300;
+
+    @Test
+    public void detect_searchesAroundPreviousQuad() {
+        float[] quad = {150, 100, 250, 95, 255, 180, 145, 185};
+        byte[] gray = JavaQuadDetectorTest.render(quad);
+        RegionOfInterest roi = new RegionOfInterest(0.25f);
+        RectangleDetector detector = new RectangleDetector(new JavaQuadDetector(), WIDTH, HEIGHT, roi);
+        LumaFrame frame = new LumaFrame();
+        float[] full = new float[8];
+        float[] cropped = new float[8];
+
+        detector.decimate(gray, WIDTH, HEIGHT, frame);
+        assertEquals(WIDTH, frame.getImage().getWidth());
+        assertTrue(detector.detect(frame, gray, full));
+
+        detector.decimate(gray, WIDTH, HEIGHT, frame);
+        assertTrue(frame.getImage().getWidth() < WIDTH / 2);
+        assertTrue(frame.getImage().getHeight() < HEIGHT / 2);
+        assertTrue(detector.detect(frame, gray, cropped));
+        assertArrayEquals(full, cropped, 1);
+    }
+
+    @Test
+    public void detect_refinesCornersInFrameCoordinates() {
+        float[] quad = {80, 60, 320, 50, 340, 240, 70, 250};
+        byte[] gray = JavaQuadDetectorTest.render(quad);
+        RectangleDetector detector = new RectangleDetector(new JavaQuadDetector(), WIDTH / 2f, HEIGHT / 2f);
+        float[] seen = new float[9];
+        detector.setCornerRefiner((luma, width, height, corners, radius) -> {
+            assertSame(gray, luma);
+            assertEquals(WIDTH, width);
+            assertEquals(HEIGHT, height);
+            System.arraycopy(corners, 0, seen, 0, 8);
+            seen[8] = radius;
+            corners[0] = -1;
+        });
+        float[] corners = new float[8];
+
+        assertTrue(detector.detect(gray, WIDTH, HEIGHT, corners));
+        assertEquals(-1, corners[0], 0);
+        assertEquals(4, seen[8], 0);
+        float maxX = 0;
+        for (int i = 0; i < 4; i++) {
+            maxX = Math.max(maxX, seen[2 * i]);
+        }
+        assertEquals(340, maxX, 6);
+    }
+
+    @Test
+    public void detect_fallsBackToFullFrameOnLoss() {
+        RegionOfInterest roi = new RegionOfInterest(0.25f);
+        roi.update(true, new float[]{150, 100, 250, 95, 255, 180, 145, 185});
+        RectangleDetector detector = new RectangleDetector(new JavaQuadDetector(), WIDTH, HEIGHT, roi);
+        LumaFrame frame = new LumaFrame();
+
+        detector.decimate(new byte[WIDTH * HEIGHT], WIDTH, HEIGHT, frame);
+        assertTrue(frame.getImage().getWidth() < WIDTH);
+        assertFalse(detector.detect(frame, null, new float[8]));
+
+        detector.decimate(new byte[WIDTH * HEIGHT], WIDTH, HEIGHT, frame);
+        assertEquals(WIDTH, frame.getImage().getWidth());
+        assertEquals(HEIGHT, frame.getImage().getHeight());
+    }
+}
@@ -0,0 +1,107 @@
+package io.github.iyotetsuya.rectangledetection.detector;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ReplayFrameSourceTest {
+    private static final int WIDTH = 8;
+    private static final int HEIGHT = 4;
+    private static final long FRAME_INTERVAL_NANOS = 20000000L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void replay_deliversEveryFrameInOrder() throws Exception {
+        File file = record(5);
+        List<Byte> firstBytes = new ArrayList<>();
+        try (ReplayFrameSource source = new ReplayFrameSource(file, ReplayFrameSource.Pacing.AS_FAST_AS_POSSIBLE, 1)) {
+            assertEquals(WIDTH, source.getWidth());
+            assertEquals(HEIGHT, source.getHeight());
+            assertEquals(5, source.getFrameCount());
+            source.start(frame -> {
+                assertEquals(WIDTH * HEIGHT * 3 / 2, frame.getData().length);
+                firstBytes.add(frame.getData()[0]);
+                // The only buffer comes back here, so the next frame waits for it
+                frame.release();
+            });
+            source.awaitEnd();
+            assertEquals(5, source.getDeliveredFrames());
+            assertEquals(0, source.getDroppedFrames());
+        }
+        for (int i = 0; i < 5; i++) {
+            assertEquals((byte) i, (byte) firstBytes.get(i));
+        }
+    }
+
+    @Test
+    public void replay_keepsRecordedPaceInRealTime() throws Exception {
+        File file = record(4);
+        List<Long> timestamps = new ArrayList<>();
+        long start = System.nanoTime();
+        try (ReplayFrameSource source = new ReplayFrameSource(file, ReplayFrameSource.Pacing.REAL_TIME, 2)) {
+            source.start(frame -> {
+                timestamps.add(frame.getTimestampNanos());
+                frame.release();
+            });
+            source.awaitEnd();
+        }
+        assertTrue(System.nanoTime() - start >= 3 * FRAME_INTERVAL_NANOS);
+        assertEquals(4, timestamps.size());
+        for (int i = 1; i < 4; i++) {
+            assertEquals(FRAME_INTERVAL_NANOS, timestamps.get(i) - timestamps.get(i - 1));
+        }
+    }
+
+    @Test
+    public void replay_dropsFramesWhileBuffersAreHeldInRealTime() throws Exception {
+        File file = record(3);
+        List<Frame> held = new ArrayList<>();
+        try (ReplayFrameSource source = new ReplayFrameSource(file, ReplayFrameSource.Pacing.REAL_TIME, 1)) {
+            source.start(held::add);
+            source.awaitEnd();
+            assertEquals(1, source.getDeliveredFrames());
+            assertEquals(2, source.getDroppedFrames());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void open_rejectsOtherFiles() throws Exception {
+        File file = folder.newFile();
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(new byte[64]);
+        }
+        new ReplayFrameSource(file, ReplayFrameSource.Pacing.AS_FAST_AS_POSSIBLE, 1);
+    }
+
+    @Test(expected = IOException.class)
+    public void open_rejectsRecordingsCutShort() throws Exception {
+        File file = record(2);
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            out.setLength(out.length() - 1);
+        }
+        new ReplayFrameSource(file, ReplayFrameSource.Pacing.AS_FAST_AS_POSSIBLE, 1);
+    }
+
+    private File record(int frames) throws IOException {
+        File file = folder.newFile();
+        byte[] data = new byte[WIDTH * HEIGHT * 3 / 2];
+        try (FrameRecorder recorder = new FrameRecorder(file, WIDTH, HEIGHT)) {
+            for (int i = 0; i < frames; i++) {
+                data[0] = (byte) i;
+                recorder.write(data, 1000 + i * FRAME_INTERVAL_NANOS);
+            }
+        }
+        return file;
+    }
+}
@@ -0,0 +1,158 @@
+package io.github.iyotetsuya.rectangledetection.detector;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Replays a recording through the per-frame path the app runs after warming it up, and fails
+ * when the replay thread allocates more per frame than {@link #BUDGET_BYTES_PER_FRAME}.
+ */
+public class SteadyStateAllocationTest {
+    private static final int WIDTH = 400;
+    private static final int HEIGHT = 300;
+    private static final int RECORDED_FRAMES = 100;
+    private static final int WARMUP_PASSES = 3;
+    private static final int MEASURED_PASSES = 10;
+    private static final long FRAME_INTERVAL_NANOS = 33000000L;
+    // 72 when written: the replay source's Frame and its recycler. Detection adds nothing, and
+    // four boxed corners a frame would already break it
+    private static final long BUDGET_BYTES_PER_FRAME = 128;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Detection through a {@link FrameProcessorChain}, corner smoothing and buffer recycling of
+     * each frame, measuring what the calling thread allocates from one frame to the next.
+     */
+    private static final class Processor implements FrameSource.Listener {
+        private final com.sun.management.ThreadMXBean threads;
+        private final RectangleDetector detector = new RectangleDetector(new JavaQuadDetector(), 200, 200);
+        private final CornerKalmanFilter filter = new CornerKalmanFilter(3000, 5, 300000000L, 100);
+        private final float[] predicted = new float[8];
+        private final FrameContext context = new FrameContext();
+        private final FrameProcessor chain = new FrameProcessorChain()
+                .add("decimate", context -> {
+                    Frame frame = context.getFrame();
+                    detector.decimate(frame.getData(), frame.getWidth(), frame.getHeight(), context.getLuma());
+                })
+                .add("detect", context -> context.setFound(detector.detect(context.getLuma(),
+                        context.getFrame().getData(), context.getCorners())));
+        private long lastAllocated = -1;
+        long allocated;
+        int frames;
+        int found;
+
+        Processor(com.sun.management.ThreadMXBean threads) {
+            this.threads = threads;
+        }
+
+        /**
+         * Starts counting afresh on the thread of the next replay.
+         */
+        void startPass() {
+            lastAllocated = -1;
+        }
+
+        @Override
+        public void onFrame(Frame frame) {
+            long now = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+            if (lastAllocated >= 0) {
+                allocated += now - lastAllocated;
+                frames++;
+            }
+            lastAllocated = now;
+            long time = frame.getTimestampNanos();
+            context.reset(frame);
+            chain.process(context);
+            context.releaseFrame();
+            if (context.isFound()) {
+                found++;
+                filter.update(context.getCorners(), time);
+            }
+            filter.predict(time, predicted);
+        }
+    }
+
+    @Test
+    public void detection_allocatesWithinBudgetOnceWarm() throws Exception {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+        File file = record();
+        Processor processor = new Processor(threads);
+        for (int i = 0; i < WARMUP_PASSES; i++) {
+            replay(file, processor);
+        }
+        processor.allocated = 0;
+        processor.frames = 0;
+        processor.found = 0;
+        long collections = collectionCount();
+        long collectionMillis = collectionTime();
+        for (int i = 0; i < MEASURED_PASSES; i++) {
+            replay(file, processor);
+        }
+        long bytesPerFrame = processor.allocated / processor.frames;
+        double perThousand = 1000.0 / processor.frames;
+        System.out.printf("steady state: %d bytes/frame over %d frames; per 1000 frames %.1f GCs, %.1f ms in GC%n",
+                bytesPerFrame, processor.frames, (collectionCount() - collections) * perThousand,
+                (collectionTime() - collectionMillis) * perThousand);
+
+        // Three in four recorded frames hold a quad
+        assertTrue(processor.found > processor.frames / 2);
+        assertTrue(bytesPerFrame + " bytes allocated per frame", bytesPerFrame <= BUDGET_BYTES_PER_FRAME);
+    }
+
+    private static void replay(File file, Processor processor) throws IOException, InterruptedException {
+        try (ReplayFrameSource source = new ReplayFrameSource(file, ReplayFrameSource.Pacing.AS_FAST_AS_POSSIBLE, 2)) {
+            processor.startPass();
+            source.start(processor);
+            source.awaitEnd();
+        }
+    }
+
+    /**
+     * Records a quad drifting across the frame, missing from every fourth frame.
+     */
+    private File record() throws IOException {
+        File file = folder.newFile();
+        byte[] data = new byte[WIDTH * HEIGHT * 3 / 2];
+        try (FrameRecorder recorder = new FrameRecorder(file, WIDTH, HEIGHT)) {
+            for (int i = 0; i < RECORDED_FRAMES; i++) {
+                int dx = i % 20;
+                byte[] luma = i % 4 == 3
+                        ? new byte[WIDTH * HEIGHT]
+                        : JavaQuadDetectorTest.render(new float[]{60 + dx, 60, 300 + dx, 50, 320 + dx, 240, 50 + dx, 250});
+                System.arraycopy(luma, 0, data, 0, luma.length);
+                recorder.write(data, i * FRAME_INTERVAL_NANOS);
+            }
+        }
+        return file;
+    }
+
+    private static long collectionCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, collector.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long collectionTime() {
+        long time = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            time += Math.max(0, collector.getCollectionTime());
+        }
+        return time;
+    }
+}
@@ -0,0 +1,61 @@
+package io.github.iyotetsuya.rectangledetection.detector;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TracerTest {
+
+    @After
+    public void tearDown() {
+        Tracer.setEnabled(false);
+        Tracer.clear();
+    }
+
+    @Test
+    public void end_ignoresSpansWhileDisabled() throws Exception {
+        Tracer.clear();
+        long span = Tracer.begin();
+        Tracer.end("stage", span);
+
+        assertEquals(0, span);
+        assertEquals(0, Tracer.getRecordedCount());
+        assertEquals(0, Tracer.writeChromeTrace(new StringBuilder()));
+    }
+
+    @Test
+    public void writeChromeTrace_writesCompleteEvents() throws Exception {
+        Tracer.clear();
+        Tracer.setEnabled(true);
+        long span = Tracer.begin();
+        Tracer.end("first", span);
+        span = Tracer.begin();
+        Tracer.end("sec\"ond", span);
+
+        StringBuilder json = new StringBuilder();
+        assertEquals(2, Tracer.writeChromeTrace(json));
+        String trace = json.toString();
+        assertTrue(trace.startsWith("{\"traceEvents\":["));
+        assertTrue(trace.endsWith("]}"));
+        assertTrue(trace.contains("{\"name\":\"first\",\"ph\":\"X\",\"pid\":1,\"tid\":"
+                + Thread.currentThread().getId() + ",\"ts\":"));
+        assertTrue(trace.contains("\"name\":\"sec\\\"ond\""));
+        assertTrue(trace.contains("\"ph\":\"M\""));
+    }
+
+    @Test
+    public void writeChromeTrace_keepsNewestSpansWhenFull() throws Exception {
+        Tracer.clear();
+        Tracer.setEnabled(true);
+        for (int i = 0; i < 20000; i++) {
+            Tracer.end(i < 10000 ? "old" : "new", Tracer.begin());
+        }
+
+        StringBuilder json = new StringBuilder();
+        int spans = Tracer.writeChromeTrace(json);
+        assertEquals(20000, Tracer.getRecordedCount());
+        assertTrue(spans < 20000);
+        assertTrue(json.indexOf("\"name\":\"new\"") >= 0);
+    }
+}
@@ -414,15 +414,17 @@ package org.opencv.core;
  *
  * @see <a href="http://docs.opencv.org/modules/core/doc/basic_structures.html#mat">org.opencv.core.Mat</a>
  */
-public class Mat {
+public class Mat implements java.io.Closeable {
 
     public final long nativeObj;
+    private final MatCleaner.Ref cleanerRef;
 
     public Mat(long addr)
     {
         if (addr == 0)
             throw new java.lang.UnsupportedOperationException("Native object address is NULL");
         nativeObj = addr;
+        cleanerRef = MatCleaner.register(this);
     }
 
     //
@@ -445,6 +447,7 @@ public class Mat {
     {
 
         nativeObj = n_Mat();
+        cleanerRef = MatCleaner.register(this);
 
         return;
     }
@@ -475,6 +478,7 @@ public class Mat {
     {
 
         nativeObj = n_Mat(rows, cols, type);
+        cleanerRef = MatCleaner.register(this);
 
         return;
     }
@@ -506,6 +510,7 @@ public class Mat {
     {
 
         nativeObj = n_Mat(size.width, size.height, type);
+        cleanerRef = MatCleaner.register(this);
 
         return;
     }
@@ -539,6 +544,7 @@ public class Mat {
     {
 
         nativeObj = n_Mat(rows, cols, type, s.val[0], s.val[1], s.val[2], s.val[3]);
+        cleanerRef = MatCleaner.register(this);
 
         return;
     }
@@ -573,6 +579,7 @@ public class Mat {
     {
 
         nativeObj = n_Mat(size.width, size.height, type, s.val[0], s.val[1], s.val[2], s.val[3]);
+        cleanerRef = MatCleaner.register(this);
 
         return;
     }
@@ -610,6 +617,7 @@ public class Mat {
     {
 
         nativeObj = n_Mat(m.nativeObj, rowRange.start, rowRange.end, colRange.start, colRange.end);
+        cleanerRef = MatCleaner.register(this);
 
         return;
     }
@@ -641,6 +649,7 @@ public class Mat {
     {
 
         nativeObj = n_Mat(m.nativeObj, rowRange.start, rowRange.end);
+        cleanerRef = MatCleaner.register(this);
 
         return;
     }
@@ -674,6 +683,7 @@ public class Mat {
     {
 
         nativeObj = n_Mat(m.nativeObj, roi.y, roi.y + roi.height, roi.x, roi.x + roi.width);
+        cleanerRef = MatCleaner.register(this);
 
         return;
     }
@@ -2470,10 +2480,15 @@ public class Mat {
         return retVal;
     }
 
+    /**
+     * <p>Frees the native object of this matrix right away instead of when it becomes
+     * unreachable. The matrix must not be used afterwards. Calling it more than once has no
+     * effect.</p>
+     */
     @Override
-    protected void finalize() throws Throwable {
-        n_delete(nativeObj);
-        super.finalize();
+    public void close()
+    {
+        MatCleaner.release(cleanerRef);
     }
 
     @Override
@@ -2835,8 +2850,8 @@ public class Mat {
     // C++: static Mat Mat::zeros(Size size, int type)
     private static native long n_zeros(double size_width, double size_height, int type);
 
-    // native support for java finalize()
-    private static native void n_delete(long nativeObj);
+    // native support for MatCleaner
+    static native void n_delete(long nativeObj);
 
     private static native int nPutD(long self, int row, int col, int count, double[] data);
 
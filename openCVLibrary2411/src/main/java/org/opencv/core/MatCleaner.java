@@ -0,0 +1,144 @@
+package org.opencv.core;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+
+/**
+ * Frees the native objects of {@link Mat}s, either explicitly through {@link Mat#close()} or,
+ * for Mats that become unreachable without being closed, from a dedicated daemon thread that
+ * drains a reference queue.
+ *
+ * <p>Unlike <code>finalize()</code>, unreachable Mats are not queued behind every other
+ * finalizable object of the process, and their Java side is collected in a single GC cycle.</p>
+ */
+public final class MatCleaner {
+
+    private static final Object lock = new Object();
+    private static final ReferenceQueue<Mat> queue = new ReferenceQueue<Mat>();
+    // Registered references form a doubly linked list, which keeps them reachable until released
+    private static final Ref head = new Ref();
+    private static long pending;
+    private static long reclaimed;
+    private static long released;
+
+    static {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                drain();
+            }
+        }, "MatCleaner");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private MatCleaner()
+    {
+    }
+
+    /**
+     * Returns the number of Mats whose native object has not been freed yet.
+     */
+    public static long getPendingCount()
+    {
+        synchronized (lock) {
+            return pending;
+        }
+    }
+
+    /**
+     * Returns the number of native objects freed because their Mat became unreachable.
+     */
+    public static long getReclaimedCount()
+    {
+        synchronized (lock) {
+            return reclaimed;
+        }
+    }
+
+    /**
+     * Returns the number of native objects freed by {@link Mat#close()}.
+     */
+    public static long getReleasedCount()
+    {
+        synchronized (lock) {
+            return released;
+        }
+    }
+
+    static Ref register(Mat mat)
+    {
+        Ref ref = new Ref(mat);
+        synchronized (lock) {
+            ref.next = head.next;
+            ref.prev = head;
+            if (head.next != null)
+                head.next.prev = ref;
+            head.next = ref;
+            pending++;
+        }
+        MatScope.track(mat);
+        return ref;
+    }
+
+    /**
+     * Frees the native object of <code>ref</code> unless that already happened.
+     */
+    static void release(Ref ref)
+    {
+        if (unlink(ref, false)) {
+            ref.clear();
+            Mat.n_delete(ref.nativeObj);
+        }
+    }
+
+    private static void drain()
+    {
+        while (true) {
+            try {
+                Ref ref = (Ref) queue.remove();
+                if (unlink(ref, true))
+                    Mat.n_delete(ref.nativeObj);
+            } catch (InterruptedException e) {
+                // Keep draining; this thread lives as long as the process
+            }
+        }
+    }
+
+    private static boolean unlink(Ref ref, boolean reclaim)
+    {
+        synchronized (lock) {
+            if (ref.prev == null)
+                return false;
+            ref.prev.next = ref.next;
+            if (ref.next != null)
+                ref.next.prev = ref.prev;
+            ref.prev = null;
+            ref.next = null;
+            pending--;
+            if (reclaim)
+                reclaimed++;
+            else
+                released++;
+            return true;
+        }
+    }
+
+    static final class Ref extends PhantomReference<Mat> {
+        final long nativeObj;
+        Ref prev;
+        Ref next;
+
+        private Ref()
+        {
+            super(null, null);
+            nativeObj = 0;
+        }
+
+        Ref(Mat mat)
+        {
+            super(mat, queue);
+            nativeObj = mat.nativeObj;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package org.opencv.core;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Pool of idle matrices keyed by rows, columns and type.
+ *
+ * <p>{@link #acquire(int, int, int)} returns an idle matrix of exactly that shape when there is
+ * one, and allocates a new one otherwise. {@link #release(Mat)} hands a matrix back. At most
+ * <code>capacity</code> matrices are kept idle; beyond that the least recently released one is
+ * evicted and closed. OpenCV functions that write into a pooled matrix of the right shape
+ * and type reuse its data instead of reallocating it.</p>
+ *
+ * <p>All methods are thread-safe.</p>
+ */
+public class MatPool {
+
+    private final int capacity;
+    private final Map<Key, ArrayDeque<Mat>> idle = new HashMap<Key, ArrayDeque<Mat>>();
+    // Idle matrices in release order, oldest first
+    private final LinkedHashMap<Mat, ArrayDeque<Mat>> lru = new LinkedHashMap<Mat, ArrayDeque<Mat>>();
+    private final Key probe = new Key();
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public MatPool(int capacity)
+    {
+        if (capacity < 0)
+            throw new IllegalArgumentException("capacity must not be negative: " + capacity);
+        this.capacity = capacity;
+    }
+
+    /**
+     * Returns a matrix with the given shape and type. Its content is undefined.
+     */
+    public synchronized Mat acquire(int rows, int cols, int type)
+    {
+        ArrayDeque<Mat> mats = idle.get(probe.set(rows, cols, type));
+        if (mats != null && !mats.isEmpty()) {
+            // Most recently released first, its data is most likely still in cache
+            Mat mat = mats.pollLast();
+            lru.remove(mat);
+            hits++;
+            return mat;
+        }
+        misses++;
+        Mat mat = new Mat(rows, cols, type);
+        // Pooled matrices outlive any MatScope they happen to be created in
+        MatScope scope = MatScope.current();
+        if (scope != null)
+            scope.escape(mat);
+        return mat;
+    }
+
+    /**
+     * Returns a matrix to the pool. The caller must not use it afterwards. Empty matrices and
+     * matrices already in the pool are ignored.
+     */
+    public synchronized void release(Mat mat)
+    {
+        if (mat == null || mat.empty() || lru.containsKey(mat))
+            return;
+        MatScope scope = MatScope.current();
+        if (scope != null)
+            scope.escape(mat);
+        ArrayDeque<Mat> mats = idle.get(probe.set(mat.rows(), mat.cols(), mat.type()));
+        if (mats == null) {
+            mats = new ArrayDeque<Mat>();
+            idle.put(new Key().set(mat.rows(), mat.cols(), mat.type()), mats);
+        }
+        mats.addLast(mat);
+        lru.put(mat, mats);
+        while (lru.size() > capacity)
+            evictEldest();
+    }
+
+    /**
+     * Frees all idle matrices.
+     */
+    public synchronized void clear()
+    {
+        while (!lru.isEmpty())
+            evictEldest();
+    }
+
+    public synchronized int getIdleCount()
+    {
+        return lru.size();
+    }
+
+    public synchronized long getHits()
+    {
+        return hits;
+    }
+
+    public synchronized long getMisses()
+    {
+        return misses;
+    }
+
+    public synchronized long getEvictions()
+    {
+        return evictions;
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        return "MatPool [ idle=" + lru.size() + "/" + capacity + ", hits=" + hits
+                + ", misses=" + misses + ", evictions=" + evictions + " ]";
+    }
+
+    private void evictEldest()
+    {
+        Iterator<Map.Entry<Mat, ArrayDeque<Mat>>> it = lru.entrySet().iterator();
+        Map.Entry<Mat, ArrayDeque<Mat>> eldest = it.next();
+        it.remove();
+        // The eldest idle matrix overall is also the eldest of its own key
+        eldest.getValue().pollFirst();
+        eldest.getKey().close();
+        evictions++;
+    }
+
+    private static final class Key {
+        int rows;
+        int cols;
+        int type;
+
+        Key set(int rows, int cols, int type)
+        {
+            this.rows = rows;
+            this.cols = cols;
+            this.type = type;
+            return this;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (!(o instanceof Key))
+                return false;
+            Key other = (Key) o;
+            return rows == other.rows && cols == other.cols && type == other.type;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return (rows * 31 + cols) * 31 + type;
+        }
+    }
+}
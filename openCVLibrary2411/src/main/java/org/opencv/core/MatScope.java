@@ -0,0 +1,104 @@
+package org.opencv.core;
+
+import java.util.ArrayList;
+
+/**
+ * Frees, in bulk, the native objects of all Mats created on one thread while the scope is open.
+ *
+ * <p>Open a scope around a unit of work such as one camera frame, and close it when the work is
+ * done:</p>
+ *
+ * <pre>
+ * MatScope scope = MatScope.open();
+ * try {
+ *     Mat result = scope.escape(process(frame));
+ *     ...
+ * } finally {
+ *     scope.close();
+ * }
+ * </pre>
+ *
+ * <p>Every Mat constructed on the opening thread until {@link #close()} is registered with the
+ * innermost open scope and closed with it, except the ones passed to {@link #escape(Mat)}.
+ * Scopes nest; closing a scope makes its parent the current scope again. A scope must be opened
+ * and closed on the same thread.</p>
+ */
+public final class MatScope implements java.io.Closeable {
+
+    private static final ThreadLocal<MatScope> current = new ThreadLocal<MatScope>();
+
+    private final MatScope parent;
+    private final ArrayList<Mat> mats = new ArrayList<Mat>();
+    private boolean closed;
+
+    private MatScope(MatScope parent)
+    {
+        this.parent = parent;
+    }
+
+    /**
+     * Opens a scope on the calling thread, nested in the current one if there is one.
+     */
+    public static MatScope open()
+    {
+        MatScope scope = new MatScope(current.get());
+        current.set(scope);
+        return scope;
+    }
+
+    /**
+     * Returns the innermost open scope of the calling thread, or null.
+     */
+    public static MatScope current()
+    {
+        return current.get();
+    }
+
+    static void track(Mat mat)
+    {
+        MatScope scope = current.get();
+        if (scope != null)
+            scope.mats.add(mat);
+    }
+
+    /**
+     * Removes <code>mat</code> from this scope and its parents, so closing them leaves it
+     * alone. Returns <code>mat</code>.
+     */
+    public <T extends Mat> T escape(T mat)
+    {
+        for (MatScope scope = this; scope != null; scope = scope.parent) {
+            int index = scope.mats.lastIndexOf(mat);
+            if (index >= 0) {
+                scope.mats.remove(index);
+                break;
+            }
+        }
+        return mat;
+    }
+
+    /**
+     * Returns the number of Mats this scope will close.
+     */
+    public int size()
+    {
+        return mats.size();
+    }
+
+    /**
+     * Closes all Mats registered with this scope that were not escaped. Calling it more than once
+     * has no effect.
+     */
+    @Override
+    public void close()
+    {
+        if (closed)
+            return;
+        closed = true;
+        if (current.get() == this)
+            current.set(parent);
+        for (int i = mats.size() - 1; i >= 0; i--)
+            mats.get(i).close();
+        mats.clear();
+    }
+}